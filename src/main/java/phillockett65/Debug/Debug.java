@@ -49,9 +49,29 @@
  * 
  * 7) if all debug, up to and including info, is to be displayed for a class use:
  *      DD = infoLevel();
+ * 
+ * Messages that are expensive to build should be passed as a Supplier or as a 
+ * format string with arguments, so that they are only built if the level is 
+ * enabled:
+ *      Debug.trace(DD, () -> "boom  " + model.getDelta());
+ *      Debug.trace(DD, "boom  %d", model.getDelta());
+ * 
+ * Both still allocate, a capturing lambda or a boxed argument array, even when 
+ * the level is disabled. Code that runs every frame should check the level 
+ * first instead:
+ *      if (Debug.isTrace(DD))
+ *          Debug.trace(DD, "boom  " + model.getDelta());
+ * 
+ * Output can be handed to a background thread by calling setAsync(true). The 
+ * caller never blocks, if the queue is full the message is dropped and counted.
  */
 package phillockett65.Debug;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
 
 public class Debug {
 
@@ -100,18 +120,132 @@ public class Debug {
         return pre(level) + ": " + line;
     }
 
+    private static boolean isEnabled(int level, int delta) {
+        return level-delta <= LEVEL;
+    }
+
+    private static void print(int level, String message) {
+        if (level <= MAJOR)
+            System.err.println(message);
+        else
+            System.out.println(message);
+    }
+
+    private static void output(int level, String line) {
+        final String message = formMessage(level, line);
+        final BlockingQueue<Entry> queue = sink;
+        if (queue == null)
+            print(level, message);
+        else if (!queue.offer(new Entry(level, message)))
+            dropped.incrementAndGet();
+    }
+
     private static void display(int level, int delta, String line) {
-        if (level-delta <= LEVEL) {
-            final String message = formMessage(level, line);
-            if (level <= MAJOR)
-                System.err.println(message);
-            else
-                System.out.println(message);
+        if (isEnabled(level, delta)) {
+            output(level, line);
+        }
+    }
+
+    private static void display(int level, int delta, Supplier<String> line) {
+        if (isEnabled(level, delta)) {
+            output(level, line.get());
+        }
+    }
+
+    private static void display(int level, int delta, String format, Object... args) {
+        if (isEnabled(level, delta)) {
+            output(level, String.format(format, args));
         }
     }
 
 
 
+    /************************************************************************
+     * Support code for the asynchronous sink.
+     */
+
+    private static final int QUEUE_SIZE = 4096;
+
+    private static class Entry {
+        final int level;
+        final String message;
+
+        Entry(int level, String message) {
+            this.level = level;
+            this.message = message;
+        }
+    }
+
+    private static volatile BlockingQueue<Entry> sink = null;
+    private static Thread sinkThread = null;
+    private static boolean hooked = false;
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static void drain(BlockingQueue<Entry> queue) {
+        for (Entry entry = queue.poll(); entry != null; entry = queue.poll())
+            print(entry.level, entry.message);
+    }
+
+    /**
+     * Enable or disable the asynchronous sink. When enabled, messages are 
+     * queued and printed by a daemon thread so that logging never blocks 
+     * the caller. Any queued messages are printed when it is disabled and 
+     * when the application exits.
+     * 
+     * @param async true to enable the sink, false to print synchronously.
+     */
+    public static synchronized void setAsync(boolean async) {
+        if (async == (sink != null))
+            return;
+
+        if (!async) {
+            // Let the sink thread print what it has queued, then print
+            // anything queued by callers that saw the sink before it went.
+            final BlockingQueue<Entry> queue = sink;
+            sink = null;
+            sinkThread.interrupt();
+            try {
+                sinkThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sinkThread = null;
+            drain(queue);
+            return;
+        }
+
+        if (!hooked) {
+            hooked = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                final BlockingQueue<Entry> queue = sink;
+                if (queue != null)
+                    drain(queue);
+            }, "Debug drain"));
+        }
+
+        final BlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(QUEUE_SIZE);
+        sinkThread = new Thread(() -> {
+            try {
+                while (true) {
+                    final Entry entry = queue.take();
+                    print(entry.level, entry.message);
+                }
+            } catch (InterruptedException e) {
+                drain(queue);
+            }
+        }, "Debug sink");
+        sinkThread.setDaemon(true);
+        sinkThread.start();
+        sink = queue;
+    }
+
+    /**
+     * @return the number of messages dropped because the sink was full.
+     */
+    public static long getDropped() { return dropped.get(); }
+
+
+
     /************************************************************************
      * Support code for the Initialization of the Model.
      */
@@ -191,6 +325,148 @@ public class Debug {
     }
 
 
+
+    /************************************************************************
+     * Support code for the lazy public interface. The message is only built 
+     * if the level is enabled.
+     */
+
+    /**
+     * Log Critical error messsage built by a Supplier.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param line supplier of the line to log
+     */
+    public static void critical(int delta, Supplier<String> line) {
+        display(CRITICAL, delta, line);
+    }
+
+    /**
+     * Log Critical error messsage built from a format string.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param format of the line to log, as used by String.format()
+     * @param args referenced by the format specifiers
+     */
+    public static void critical(int delta, String format, Object... args) {
+        display(CRITICAL, delta, format, args);
+    }
+
+    /**
+     * Log Major error messsage built by a Supplier.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param line supplier of the line to log
+     */
+    public static void major(int delta, Supplier<String> line) {
+        display(MAJOR, delta, line);
+    }
+
+    /**
+     * Log Major error messsage built from a format string.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param format of the line to log, as used by String.format()
+     * @param args referenced by the format specifiers
+     */
+    public static void major(int delta, String format, Object... args) {
+        display(MAJOR, delta, format, args);
+    }
+
+    /**
+     * Log Minor error messsage built by a Supplier.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param line supplier of the line to log
+     */
+    public static void minor(int delta, Supplier<String> line) {
+        display(MINOR, delta, line);
+    }
+
+    /**
+     * Log Minor error messsage built from a format string.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param format of the line to log, as used by String.format()
+     * @param args referenced by the format specifiers
+     */
+    public static void minor(int delta, String format, Object... args) {
+        display(MINOR, delta, format, args);
+    }
+
+    /**
+     * Log Warning messsage built by a Supplier.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param line supplier of the line to log
+     */
+    public static void warning(int delta, Supplier<String> line) {
+        display(WARNING, delta, line);
+    }
+
+    /**
+     * Log Warning messsage built from a format string.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param format of the line to log, as used by String.format()
+     * @param args referenced by the format specifiers
+     */
+    public static void warning(int delta, String format, Object... args) {
+        display(WARNING, delta, format, args);
+    }
+
+    /**
+     * Log Trace messsage built by a Supplier.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param line supplier of the line to log
+     */
+    public static void trace(int delta, Supplier<String> line) {
+        display(TRACE, delta, line);
+    }
+
+    /**
+     * Log Trace messsage built from a format string.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param format of the line to log, as used by String.format()
+     * @param args referenced by the format specifiers
+     */
+    public static void trace(int delta, String format, Object... args) {
+        display(TRACE, delta, format, args);
+    }
+
+    /**
+     * Log Informational messsage built by a Supplier.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param line supplier of the line to log
+     */
+    public static void info(int delta, Supplier<String> line) {
+        display(INFO, delta, line);
+    }
+
+    /**
+     * Log Informational messsage built from a format string.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @param format of the line to log, as used by String.format()
+     * @param args referenced by the format specifiers
+     */
+    public static void info(int delta, String format, Object... args) {
+        display(INFO, delta, format, args);
+    }
+
+    /**
+     * Check if a level is enabled before doing any other work to log it.
+     * @param delta adjustment, +ve values increase the amount of debug 
+     *              generated, whereas -ve values decrease it.
+     * @return true if messages at the level would be displayed.
+     */
+    public static boolean isTrace(int delta) { return isEnabled(TRACE, delta); }
+    public static boolean isInfo(int delta) { return isEnabled(INFO, delta); }
+
+
     /************************************************************************
      * Calculate delta values for absolute debugging levels.
      */
@@ -0,0 +1,107 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Advance is the class that simulates generations until a target generation
+ * is reached, as a Task run on its own thread. Nothing is drawn while it
+ * runs; the progress is the fraction of the generations done and the message
+ * gives the generation reached and the generations per second. It stops at
+ * the end of a generation when cancelled, leaving the Model consistent.
+ *
+ * The Model must not be used by any other thread until the Task is done.
+ */
+package phillockett65.GameOfLife;
+
+import javafx.concurrent.Task;
+import phillockett65.Debug.Debug;
+
+public class Advance extends Task<Long> {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    // Minimum time between updates of the message, in nanoseconds.
+    private static final long REPORT_INTERVAL = 200000000L;
+
+    private final Model model;
+    private final long target;
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of Advance.
+     */
+
+    /**
+     * Constructor.
+     * @param model to advance.
+     * @param target generation to stop at.
+     */
+    public Advance(Model model, long target) {
+        this.model = model;
+        this.target = target;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public long getTarget() { return target; }
+
+    /**
+     * Simulate generations until the target is reached or the task is
+     * cancelled.
+     * @return the generation reached.
+     */
+    @Override
+    protected Long call() {
+        final long start = model.getGeneration();
+        final long total = target - start;
+        final long began = System.nanoTime();
+        long reported = began;
+        long reportedGeneration = start;
+
+        Debug.trace(DD, "Advance.call() from %d to %d", start, target);
+        while (model.getGeneration() < target && !isCancelled()) {
+            model.nextGeneration();
+
+            final long generation = model.getGeneration();
+            final long now = System.nanoTime();
+            if (now - reported >= REPORT_INTERVAL) {
+                final long rate = (generation - reportedGeneration) * 1000000000L / (now - reported);
+                updateProgress(generation - start, total);
+                updateMessage("Generation " + generation + " of " + target + ", " + rate + " generations/s");
+                reported = now;
+                reportedGeneration = generation;
+            }
+        }
+
+        final long generation = model.getGeneration();
+        final long elapsed = Math.max(1, System.nanoTime() - began);
+        updateProgress(generation - start, total);
+        updateMessage("Generation " + generation + ", " + (generation - start) * 1000000000L / elapsed + " generations/s");
+        Debug.trace(DD, "Advance.call() reached %d", generation);
+
+        return generation;
+    }
+
+}
@@ -26,7 +26,6 @@ package phillockett65.GameOfLife;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -34,8 +33,10 @@ import javafx.scene.Scene;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import phillockett65.Debug.Debug;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 
 /**
@@ -46,11 +47,17 @@ public class App extends Application {
 
     @Override
     public void start(Stage stage) throws IOException {
+        Startup.phase("toolkit");
+
+        // Read the settings while the FXML is loaded.
+        DataStore1.prefetch();
+
         FXMLLoader fxmlLoader = new FXMLLoader(App.class.getResource("primary.fxml"));
 
         Parent root = fxmlLoader.load();
         Scene scene = new Scene(root);
         PrimaryController controller = fxmlLoader.getController();
+        Startup.phase("fxml");
 
         ObservableList<Image> icons = stage.getIcons();
         icons.add(new Image(getClass().getResourceAsStream("icon32.png")));
@@ -66,31 +73,57 @@ public class App extends Application {
         stage.setMinWidth(300); // 284
         stage.setMinHeight(550);// 511
 
-        scene.widthProperty().addListener(new ChangeListener<Number>() {
-            @Override public void changed(ObservableValue<? extends Number> observableValue, Number oldSceneWidth, Number newSceneWidth) {
-                // System.out.println("Width: " + newSceneWidth);
-                controller.syncEarthCanvas();
-            }
-        });
-        scene.heightProperty().addListener(new ChangeListener<Number>() {
-            @Override public void changed(ObservableValue<? extends Number> observableValue, Number oldSceneHeight, Number newSceneHeight) {
-                // System.out.println("Height: " + newSceneHeight);
-                controller.syncEarthCanvas();
-            }
-        });
+        // The controller coalesces the redraws, so dragging the window
+        // repaints at most once per pulse however many changes there are.
+        ChangeListener<Number> resize = (observableValue, oldSize, newSize) -> controller.syncEarthCanvas();
+        scene.widthProperty().addListener(resize);
+        scene.heightProperty().addListener(resize);
 
         controller.init(stage, scene);
-        
+        Startup.phase("controller");
+
         stage.show();
+        Startup.phase("show");
     }
 
     @Override
     public void stop() throws Exception {
         // Write current state to disc using the latest version of the DataStore.
-        DataStore1.writeData();
+        DataStore1.writeData(Model.getInstance());
+
+        // Close any recording or playback so that the index is written.
+        Model.getInstance().stopRecording();
+        Model.getInstance().stopPlayback();
+        Model.getInstance().stopDistributed();
+        Model.getInstance().stopViewer();
     }
 
     public static void main(String[] args) {
+        Startup.begin();
+        Debug.setAsync(Boolean.getBoolean("debug.async"));
+
+        if (args.length > 0) {
+            // Run a headless tool instead of the GUI.
+            final String[] options = Arrays.copyOfRange(args, 1, args.length);
+            switch (args[0]) {
+                case "export":
+                    System.exit(Exporter.main(options));
+                    return;
+                case "server":
+                    System.exit(Server.main(options));
+                    return;
+                case "sweep":
+                    System.exit(Sweep.main(options));
+                    return;
+                case "soup":
+                    System.exit(Soup.main(options));
+                    return;
+                case "compare":
+                    System.exit(Compare.main(options));
+                    return;
+            }
+        }
+
         launch();
     }
 
@@ -0,0 +1,150 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Compare is the class that runs the same random soup under several rules
+ * side by side, one world per rule, stepped concurrently by Worlds. The
+ * population of each world is written as a CSV line at regular intervals.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import phillockett65.Debug.Debug;
+
+public class Compare {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+
+
+    /************************************************************************
+     * Support code for the headless tool.
+     */
+
+    private static void usage() {
+        System.err.println("Usage: compare --rule RULE --rule RULE [options]");
+        System.err.println("  --rule RULE       a rule to run, in any notation the rule field");
+        System.err.println("                    accepts, given once per world");
+        System.err.println("  --size N          width and height of the soup (default 200)");
+        System.err.println("  --soup DENSITY    density of the soup (default 0.35)");
+        System.err.println("  --seed N          random seed for the soup (default 1)");
+        System.err.println("  --generations N   generations to run (default 1000)");
+        System.err.println("  --every N         generations between lines (default 100)");
+        System.err.println("  --threads N       number of threads (default all cores)");
+        System.err.println("  --out FILE        write the populations to FILE instead of stdout");
+    }
+
+    /**
+     * Headless entry point.
+     * @param args command line options, see usage().
+     * @return 0 on success, non-zero otherwise.
+     */
+    public static int main(String[] args) {
+        List<String> rules = new ArrayList<String>();
+        int size = 200;
+        double density = 0.35;
+        long seed = 1;
+        long generations = 1000;
+        long every = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File output = null;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--rule":          rules.add(args[++i]); break;
+                    case "--size":          size = Integer.parseInt(args[++i]); break;
+                    case "--soup":          density = Double.parseDouble(args[++i]); break;
+                    case "--seed":          seed = Long.parseLong(args[++i]); break;
+                    case "--generations":   generations = Long.parseLong(args[++i]); break;
+                    case "--every":         every = Long.parseLong(args[++i]); break;
+                    case "--threads":       threads = Integer.parseInt(args[++i]); break;
+                    case "--out":           output = new File(args[++i]); break;
+                    default:                throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            usage();
+            return 1;
+        }
+
+        if (rules.isEmpty() || size <= 0 || generations <= 0 || every <= 0 || threads <= 0) {
+            usage();
+            return 1;
+        }
+
+        Worlds worlds = new Worlds(threads);
+        try {
+            for (String rule : rules) {
+                Model world = worlds.add();
+                world.setRuleString(rule);
+                final int left = (world.getWidth() - size) / 2;
+                final int top = (world.getHeight() - size) / 2;
+                world.fillRegion(left, top, size, size, density, seed);
+            }
+        } catch (IllegalArgumentException e) {
+            Debug.critical(DD, e.getMessage());
+            worlds.shutdown();
+            return 1;
+        }
+
+        try (PrintStream out = (output == null) ? null : new PrintStream(output)) {
+            final PrintStream stream = (out == null) ? System.out : out;
+            final long start = System.nanoTime();
+
+            StringBuilder header = new StringBuilder("generation");
+            for (String rule : rules)
+                header.append(",\"").append(rule).append('"');
+            stream.println(header);
+
+            long generation = 0;
+            while (true) {
+                StringBuilder line = new StringBuilder().append(generation);
+                for (Model world : worlds.getWorlds())
+                    line.append(',').append(world.getPopulation());
+                stream.println(line);
+
+                if (generation >= generations)
+                    break;
+
+                final long step = Math.min(every, generations - generation);
+                worlds.advanceAll(step).join();
+                generation += step;
+            }
+
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("Compared %d rules over %d generations in %.2fs%n", rules.size(), generations, seconds);
+        } catch (FileNotFoundException e) {
+            Debug.critical(DD, e.getMessage());
+            return 1;
+        } finally {
+            worlds.shutdown();
+        }
+
+        return 0;
+    }
+
+}
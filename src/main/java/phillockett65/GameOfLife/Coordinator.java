@@ -0,0 +1,323 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Coordinator is the class that partitions the landscape into vertical
+ * strips and hands each one to a Worker running in its own JVM on the same
+ * host, connected over loopback TCP. The workers are allowed to run a few
+ * generations ahead of the display. A reader thread per worker queues the
+ * toggled cells it reports and next() merges one generation from every
+ * worker, without blocking, for the Model to apply and the controller to
+ * display.
+ *
+ * The landscape and rules are captured when the Coordinator is constructed.
+ * The workers are then started by start(), which blocks until they have all
+ * connected and so is called on a separate thread. Generations are only
+ * available once it has returned.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import phillockett65.Debug.Debug;
+
+public class Coordinator {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    private static final int AHEAD = 4;
+    private static final int TIMEOUT = 30000;
+
+    private final int count;
+    private final int width;
+    private final int height;
+    private final int[] living;
+    private final int liveMask;
+    private final int birthMask;
+
+    // Guarded by this, so that close() can stop start() at any point.
+    private ServerSocket server = null;
+    private boolean closed = false;
+
+    private volatile boolean started = false;
+    private final ArrayList<Process> processes = new ArrayList<Process>();
+    private final ArrayList<Socket> sockets = new ArrayList<Socket>();
+    private final ArrayList<DataOutputStream> controls = new ArrayList<DataOutputStream>();
+    private final ArrayList<ArrayBlockingQueue<int[]>> deltas = new ArrayList<ArrayBlockingQueue<int[]>>();
+    private volatile boolean failed = false;
+
+
+
+    /************************************************************************
+     * Support code for the workers.
+     */
+
+    /**
+     * Start a worker JVM using the same class and module paths as this one.
+     * @param port the workers should connect to.
+     */
+    private Process spawn(int port) throws IOException {
+        ArrayList<String> command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+
+        final String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            command.add("--module-path");
+            command.add(modulePath);
+            command.add("--add-modules");
+            command.add("ALL-MODULE-PATH");
+        }
+
+        command.add(Worker.class.getName());
+        command.add("--coordinator");
+        command.add(String.valueOf(port));
+
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private static int getMask(Model model, boolean live) {
+        int mask = 0;
+        for (int i = 1; i <= 8; ++i)
+            if (live ? model.isLiveCheck(i) : model.isBirthCheck(i))
+                mask |= 1 << i;
+
+        return mask;
+    }
+
+    /**
+     * Read the toggled cells of each generation from a worker.
+     */
+    private void read(int index, DataInputStream in) {
+        ArrayBlockingQueue<int[]> queue = deltas.get(index);
+        try {
+            while (true) {
+                int[] cells = new int[in.readInt()];
+                for (int i = 0; i < cells.length; ++i)
+                    cells[i] = in.readInt();
+                queue.put(cells);
+            }
+        } catch (IOException | InterruptedException e) {
+            if (!failed)
+                Debug.trace(DD, "Coordinator worker %d closed", index);
+        }
+        failed = true;
+    }
+
+    private void send(int index, int... values) throws IOException {
+        DataOutputStream out = controls.get(index);
+        for (int value : values)
+            out.writeInt(value);
+        out.flush();
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Coordinator.
+     */
+
+    /**
+     * Constructor, which captures the landscape and rules to hand to the
+     * workers.
+     * @param model providing the landscape and rules.
+     * @param workers number of worker JVMs to start.
+     */
+    public Coordinator(Model model, int workers) {
+        width = model.getWidth();
+        height = model.getHeight();
+        count = Math.max(1, Math.min(workers, width / 2));
+        living = model.getLivingCells();
+        liveMask = getMask(model, true);
+        birthMask = getMask(model, false);
+    }
+
+    /**
+     * Start the workers and hand each one its strip of the landscape. This
+     * blocks until every worker has connected, so it must not be called on
+     * the FX Application Thread.
+     * @throws IOException if the workers cannot be started or the
+     *                     Coordinator was closed while they were starting.
+     */
+    public void start() throws IOException {
+        try {
+            final int port;
+            synchronized (this) {
+                if (closed)
+                    throw new IOException("Distributed simulation stopped");
+
+                server = new ServerSocket(0, count, InetAddress.getLoopbackAddress());
+                server.setSoTimeout(TIMEOUT);
+                port = server.getLocalPort();
+                for (int i = 0; i < count; ++i)
+                    processes.add(spawn(port));
+            }
+
+            // Closing the server socket ends any wait for a worker.
+            ArrayList<DataInputStream> inputs = new ArrayList<DataInputStream>();
+            int[] ports = new int[count];
+            for (int i = 0; i < count; ++i) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                synchronized (this) {
+                    if (closed) {
+                        socket.close();
+                        throw new IOException("Distributed simulation stopped");
+                    }
+                    sockets.add(socket);
+                    controls.add(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+                    deltas.add(new ArrayBlockingQueue<int[]>(AHEAD + 1));
+                }
+                inputs.add(in);
+                ports[i] = in.readInt();
+            }
+
+            synchronized (this) {
+                if (closed)
+                    throw new IOException("Distributed simulation stopped");
+
+                initialize(inputs, ports);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+
+        started = true;
+        Debug.trace(DD, "Coordinator started %d workers", count);
+    }
+
+    /**
+     * Hand each worker its strip and let them run ahead.
+     */
+    private void initialize(ArrayList<DataInputStream> inputs, int[] ports) throws IOException {
+        server.close();
+        for (int i = 0; i < count; ++i) {
+            final int left = i * width / count;
+            final int right = (i + 1) * width / count;
+            int cells = 0;
+            for (int pos : living)
+                if (Model.extractX(pos) >= left && Model.extractX(pos) < right)
+                    ++cells;
+
+            send(i, Worker.INIT, i, count, left, right - left, height,
+                liveMask, birthMask, ports[(i + 1) % count], cells);
+            DataOutputStream out = controls.get(i);
+            for (int pos : living)
+                if (Model.extractX(pos) >= left && Model.extractX(pos) < right)
+                    out.writeInt(pos);
+            out.flush();
+        }
+
+        for (int i = 0; i < count; ++i) {
+            final int index = i;
+            final DataInputStream in = inputs.get(i);
+            Thread reader = new Thread(() -> read(index, in), "Coordinator reader " + i);
+            reader.setDaemon(true);
+            reader.start();
+            send(i, Worker.STEP, AHEAD);
+        }
+    }
+
+    /**
+     * Stop the workers and release all resources. This may be called on any
+     * thread, including while start() is waiting for the workers.
+     */
+    public synchronized void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        failed = true;
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                Debug.critical(DD, e.getMessage());
+            }
+        }
+        for (int i = 0; i < controls.size(); ++i) {
+            try {
+                send(i, Worker.STOP);
+            } catch (IOException e) {
+                Debug.trace(DD, "Coordinator worker %d already closed", i);
+            }
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Debug.critical(DD, e.getMessage());
+            }
+        }
+        for (Process process : processes)
+            process.destroy();
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public int getWorkerCount() { return count; }
+    public boolean isFailed() { return failed; }
+    public boolean isStarted() { return started; }
+
+    /**
+     * Merge the next generation from all the workers if every worker has
+     * reported it, and allow each worker to run one more generation ahead.
+     * @return the merged list of toggled cells or null if not yet available.
+     */
+    public LinkedList<Integer> next() throws IOException {
+        if (failed)
+            throw new IOException("Distributed simulation failed");
+        if (!started)
+            return null;
+
+        for (ArrayBlockingQueue<int[]> queue : deltas)
+            if (queue.isEmpty())
+                return null;
+
+        LinkedList<Integer> toggles = new LinkedList<>();
+        for (int i = 0; i < count; ++i) {
+            for (int pos : deltas.get(i).poll())
+                toggles.add(pos);
+            send(i, Worker.STEP, 1);
+        }
+
+        return toggles;
+    }
+
+}
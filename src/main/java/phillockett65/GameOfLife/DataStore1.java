@@ -31,6 +31,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 import phillockett65.Debug.Debug;
 
@@ -52,6 +53,9 @@ public class DataStore1 extends DataStore {
     private Integer speed;
     private Integer size;
 
+    private String topology;
+    private String rule;
+
 
     /************************************************************************
      * Support code for the Initialization, getters and setters of DataStore1.
@@ -68,11 +72,11 @@ public class DataStore1 extends DataStore {
 
     /**
      * Data exchange from the model to this DataStore.
+     * @param model to pull the settings from.
      * @return true if data successfully pulled from the model, false otherwise.
      */
-    private boolean pull() {
+    private boolean pull(Model model) {
         boolean success = true;
-        Model model = Model.getInstance();
 
         mainX = model.getStage().getX();
         mainY = model.getStage().getY();
@@ -86,16 +90,19 @@ public class DataStore1 extends DataStore {
         speed = model.getSpeed();
         size = model.getSize();
 
+        topology = model.getTopology().name();
+        rule = model.isCheckBoxRule() ? null : model.getRuleString();
+
         return success;
     }
 
     /**
      * Data exchange from this DataStore to the model.
+     * @param model to push the settings to.
      * @return true if data successfully pushed to the model, false otherwise.
      */
-    private boolean push() {
+    private boolean push(Model model) {
         boolean success = true;
-        Model model = Model.getInstance();
 
         model.getStage().setX(mainX);
         model.getStage().setY(mainY);
@@ -109,6 +116,15 @@ public class DataStore1 extends DataStore {
         model.setSpeed(speed);
         model.setSize(size);
 
+        // Settings written before topologies were added have none.
+        if (topology != null)
+            model.setTopology(Model.Topology.valueOf(topology));
+
+        // The check boxes hold the rule unless it is non-totalistic or
+        // Larger than Life.
+        if (rule != null)
+            model.setRuleString(rule);
+
         return success;
     }
 
@@ -121,13 +137,14 @@ public class DataStore1 extends DataStore {
     /**
      * Static method that instantiates a DataStore, populates it from the 
      * model and writes it to disc.
+     * @param model shown by the GUI, whose settings are written.
      * @return true if data successfully written to disc, false otherwise.
      */
-    public static boolean writeData() {
+    public static boolean writeData(Model model) {
         boolean success = false;
 
         DataStore1 store = new DataStore1();
-        store.pull();
+        store.pull(model);
         store.dump();
 
         ObjectOutputStream objectOutputStream;
@@ -147,24 +164,44 @@ public class DataStore1 extends DataStore {
     /**
      * Static method that instantiates a DataStore, populates it from disc 
      * and writes it to the model.
+     * @param model shown by the GUI, which receives the settings.
      * @return true if data successfully read from disc, false otherwise.
      */
-    public static boolean readData() {
+    public static boolean readData(Model model) {
         boolean success = false;
 
-        ObjectInputStream objectInputStream;
-        try {
-            objectInputStream = new ObjectInputStream(new FileInputStream(Model.DATAFILE));
+        final DataStore1 store = (pending != null) ? pending.join() : load();
+        pending = null;
+        if (store != null) {
+            success = store.push(model);
+            store.dump();
+        }
+
+        return success;
+    }
 
+    // Settings being read in the background by prefetch().
+    private static CompletableFuture<DataStore1> pending = null;
+
+    /**
+     * Start reading the settings from disc in the background, so that
+     * readData() only has to wait for whatever is left.
+     */
+    public static void prefetch() {
+        pending = CompletableFuture.supplyAsync(DataStore1::load);
+    }
+
+    /**
+     * Read a DataStore from disc without touching the model.
+     * @return the DataStore, or null if there is no compatible one.
+     */
+    private static DataStore1 load() {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(Model.DATAFILE))) {
             DataStore base = (DataStore)objectInputStream.readObject();
             long SVUID = ObjectStreamClass.lookup(base.getClass()).getSerialVersionUID();
- 
-            DataStore1 store = null;
-            if (SVUID == 1) {
-                store = (DataStore1)base;
-                success = store.push();
-                store.dump();
-            }
+
+            if (SVUID == 1)
+                return (DataStore1)base;
 
         } catch (IOException e) {
             Debug.critical(DD, e.getMessage());
@@ -172,7 +209,7 @@ public class DataStore1 extends DataStore {
             Debug.critical(DD, e.getMessage());
         }
 
-        return success;
+        return null;
     }
 
 
@@ -193,6 +230,8 @@ public class DataStore1 extends DataStore {
         Debug.info(DD, "");
         Debug.info(DD, "speed = " + speed);
         Debug.info(DD, "size = " + size);
+        Debug.info(DD, "topology = " + topology);
+        Debug.info(DD, "rule = " + rule);
         Debug.info(DD, "");
     }
 
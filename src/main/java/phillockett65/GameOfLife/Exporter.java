@@ -0,0 +1,504 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Exporter is the class that renders a viewport of the landscape for a range
+ * of generations without JavaFX, either as numbered PNG files or as a single
+ * animated GIF. The simulation thread only copies the viewport cells of each
+ * generation, the rendering and encoding of the frames is done by a pool of
+ * worker threads. The number of frames in flight is bounded so that memory
+ * use does not depend on the length of the export.
+ *
+ * GIF frames are encoded in parallel as individual GIF images which are then
+ * spliced, in order, into a single animation by the writer thread.
+ */
+package phillockett65.GameOfLife;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import phillockett65.Debug.Debug;
+
+public class Exporter {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    public enum Format { PNG, GIF }
+
+    // Palette matching the base, contrast and living colours of the canvas.
+    private static final byte BASE = 0;
+    private static final byte CONTRAST = 1;
+    private static final byte LIVING = 2;
+    private static final IndexColorModel PALETTE = new IndexColorModel(2, 4,
+        new byte[] { (byte)255, (byte)220, (byte)220, 0 },
+        new byte[] { (byte)255, (byte)220, (byte)20, 0 },
+        new byte[] { (byte)255, (byte)255, (byte)60, 0 });
+
+    private static final Future<byte[]> END = new CompletableFuture<byte[]>();
+
+    private final Model model;
+    private final int xOrigin;
+    private final int yOrigin;
+    private final int columns;
+    private final int rows;
+    private final int size;
+    private final boolean shadow;
+    private final Format format;
+    private final File output;
+    private final int threads;
+    private int delay = 100;
+
+
+
+    /************************************************************************
+     * Support code for rendering frames.
+     */
+
+    /**
+     * Copy the viewport cells of the current generation.
+     * @return one byte per cell, 1 if living, 0 otherwise.
+     */
+    private byte[] capture() {
+        final int width = model.getWidth();
+        final int height = model.getHeight();
+        byte[] cells = new byte[columns * rows];
+        int i = 0;
+        for (int row = 0; row < rows; ++row) {
+            final int y = Math.floorMod(yOrigin + row, height);
+            for (int column = 0; column < columns; ++column) {
+                final int x = Math.floorMod(xOrigin + column, width);
+                cells[i++] = (byte)(model.isLiving(x, y) ? 1 : 0);
+            }
+        }
+
+        return cells;
+    }
+
+    /**
+     * Render the captured cells in the same style as the canvas.
+     * @param cells captured by capture().
+     * @return the rendered image.
+     */
+    private BufferedImage render(byte[] cells) {
+        BufferedImage image = new BufferedImage(columns * size, rows * size,
+            BufferedImage.TYPE_BYTE_BINARY, PALETTE);
+        final int stride = ((MultiPixelPackedSampleModel)image.getSampleModel()).getScanlineStride();
+        final byte[] data = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+
+        byte[] line = new byte[stride];
+        for (int row = 0; row < rows; ++row) {
+            final int y = yOrigin + row;
+            Arrays.fill(line, (byte)0);
+            for (int column = 0; column < columns; ++column) {
+                final int x = xOrigin + column;
+                final boolean living = cells[row * columns + column] != 0;
+                final boolean contrast = (x + y) % 2 == 0;
+                byte colour;
+                if (shadow) {
+                    colour = (contrast != living) ? CONTRAST : BASE;
+                } else if (living) {
+                    colour = LIVING;
+                } else {
+                    colour = contrast ? CONTRAST : BASE;
+                }
+
+                // Pack 4 pixels of 2 bits each per byte, most significant first.
+                final int end = (column + 1) * size;
+                for (int i = column * size; i < end; ++i)
+                    line[i >> 2] |= colour << (6 - 2 * (i & 3));
+            }
+
+            for (int i = 0; i < size; ++i)
+                System.arraycopy(line, 0, data, (row * size + i) * stride, stride);
+        }
+
+        return image;
+    }
+
+    /**
+     * Render and encode a frame, either as a PNG file or as an in-memory GIF.
+     * @param cells captured by capture().
+     * @param frame number used to name the PNG file.
+     * @return the encoded GIF or null for PNG files.
+     */
+    private byte[] encode(byte[] cells, long frame) throws IOException {
+        BufferedImage image = render(cells);
+        if (format == Format.PNG) {
+            File file = new File(output, String.format("frame_%06d.png", frame));
+            if (!ImageIO.write(image, "png", file))
+                throw new IOException("No PNG writer available");
+
+            return null;
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "gif", stream))
+            throw new IOException("No GIF writer available");
+
+        return stream.toByteArray();
+    }
+
+
+
+    /************************************************************************
+     * Support code for splicing GIF frames into an animation.
+     */
+
+    private static int skipSubBlocks(byte[] gif, int i) {
+        while ((gif[i] & 0xFF) != 0)
+            i += (gif[i] & 0xFF) + 1;
+
+        return i + 1;
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+
+    /**
+     * Write the GIF header, logical screen descriptor and looping extension
+     * using the dimensions of the first frame.
+     */
+    private void writeGifHeader(OutputStream out, byte[] gif) throws IOException {
+        out.write("GIF89a".getBytes("US-ASCII"));
+        out.write(gif, 6, 4);   // Logical screen width and height.
+        out.write(0);           // No global colour table, each frame has a local one.
+        out.write(0);           // Background colour index.
+        out.write(0);           // Pixel aspect ratio.
+
+        out.write(new byte[] { 0x21, (byte)0xFF, 0x0B });
+        out.write("NETSCAPE2.0".getBytes("US-ASCII"));
+        out.write(new byte[] { 0x03, 0x01, 0x00, 0x00, 0x00 });
+    }
+
+    /**
+     * Append a single frame GIF as the next frame of the animation. The
+     * frame's global colour table becomes the local colour table.
+     */
+    private void writeGifFrame(OutputStream out, byte[] gif) throws IOException {
+        final int flags = gif[10] & 0xFF;
+        int i = 13;
+        int tableStart = i;
+        int tableLength = 0;
+        if ((flags & 0x80) != 0) {
+            tableLength = 3 << ((flags & 0x07) + 1);
+            i += tableLength;
+        }
+
+        while ((gif[i] & 0xFF) == 0x21)
+            i = skipSubBlocks(gif, i + 2);
+
+        if ((gif[i] & 0xFF) != 0x2C)
+            throw new IOException("Unexpected GIF block " + gif[i]);
+
+        // Graphic control extension for the frame delay.
+        out.write(new byte[] { 0x21, (byte)0xF9, 0x04, 0x00 });
+        writeShort(out, delay / 10);
+        out.write(new byte[] { 0x00, 0x00 });
+
+        out.write(gif, i, 9);
+        final int descriptor = gif[i + 9] & 0xFF;
+        i += 10;
+        if ((descriptor & 0x80) != 0) {
+            tableStart = i;
+            tableLength = 3 << ((descriptor & 0x07) + 1);
+            i += tableLength;
+            out.write(descriptor);
+        } else if (tableLength > 0) {
+            out.write(0x80 | (descriptor & 0x78) | (flags & 0x07));
+        } else {
+            out.write(descriptor);
+        }
+        out.write(gif, tableStart, tableLength);
+
+        final int start = i;
+        i = skipSubBlocks(gif, i + 1);
+        out.write(gif, start, i - start);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Exporter.
+     */
+
+    /**
+     * Constructor.
+     * @param model to simulate and render.
+     * @param x cell position of the left edge of the viewport.
+     * @param y cell position of the top edge of the viewport.
+     * @param columns width of the viewport in cells.
+     * @param rows height of the viewport in cells.
+     * @param size of a cell in pixels.
+     * @param shadow renders in shadow mode if true.
+     * @param format of the output.
+     * @param output directory for PNG files or file for a GIF.
+     * @param threads number of encoding threads.
+     */
+    public Exporter(Model model, int x, int y, int columns, int rows, int size,
+        boolean shadow, Format format, File output, int threads) {
+        this.model = model;
+        this.xOrigin = x;
+        this.yOrigin = y;
+        this.columns = columns;
+        this.rows = rows;
+        this.size = size;
+        this.shadow = shadow;
+        this.format = format;
+        this.output = output;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param milliseconds between GIF frames.
+     */
+    public void setDelay(int milliseconds) { delay = milliseconds; }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * Advance the model to the first generation then export each generation
+     * up to and including the last.
+     * @param from first generation to export.
+     * @param to last generation to export.
+     */
+    public void export(long from, long to) throws IOException, InterruptedException {
+        Debug.trace(DD, "export() " + from + " to " + to + " as " + format);
+
+        if (format == Format.PNG && !output.isDirectory() && !output.mkdirs())
+            throw new IOException("Cannot create directory " + output);
+
+        while (model.getGeneration() < from)
+            model.nextGeneration();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ExecutorService writerPool = Executors.newSingleThreadExecutor();
+        ArrayBlockingQueue<Future<byte[]>> frames = new ArrayBlockingQueue<Future<byte[]>>(threads * 2);
+        Future<IOException> writer = writerPool.submit(() -> write(frames));
+
+        try {
+            for (long generation = from; generation <= to; ++generation) {
+                final byte[] cells = capture();
+                final long frame = generation;
+                if (!put(frames, pool.submit(() -> encode(cells, frame)), writer))
+                    break;
+
+                if (generation < to)
+                    model.nextGeneration();
+            }
+            put(frames, END, writer);
+
+            IOException failure = writer.get();
+            if (failure != null)
+                throw failure;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            writerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue a frame for the writer, waiting while the queue is full.
+     * @return false if the writer has stopped, true otherwise.
+     */
+    private boolean put(ArrayBlockingQueue<Future<byte[]>> frames, Future<byte[]> frame,
+        Future<IOException> writer) throws InterruptedException {
+        while (!frames.offer(frame, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone())
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Wait for each frame in order and, for a GIF, append it to the file.
+     * @return the first failure or null if all the frames were written.
+     */
+    private IOException write(ArrayBlockingQueue<Future<byte[]>> frames) {
+        OutputStream out = null;
+        try {
+            if (format == Format.GIF)
+                out = new BufferedOutputStream(new FileOutputStream(output));
+
+            long count = 0;
+            for (Future<byte[]> frame = frames.take(); frame != END; frame = frames.take()) {
+                byte[] gif = frame.get();
+                if (out != null) {
+                    if (count == 0)
+                        writeGifHeader(out, gif);
+                    writeGifFrame(out, gif);
+                }
+                ++count;
+            }
+
+            if (out != null)
+                out.write(0x3B);
+            Debug.trace(DD, "write() " + count + " frames");
+        } catch (IOException e) {
+            return e;
+        } catch (ExecutionException e) {
+            return new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            return new IOException(e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Debug.critical(DD, e.getMessage());
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the command line.
+     */
+
+    private static void usage() {
+        System.err.println("Usage: export [options] OUTPUT");
+        System.err.println("  --recording FILE  play back a recording instead of simulating");
+        System.err.println("  --soup DENSITY    seed the viewport with a random soup (default 0.35)");
+        System.err.println("  --seed N          random seed for the soup (default 1)");
+        System.err.println("  --from N          first generation to export (default 0)");
+        System.err.println("  --to N            last generation to export (default 100)");
+        System.err.println("  --x N --y N       top left cell of the viewport (default 0 0)");
+        System.err.println("  --columns N       width of the viewport in cells (default 100)");
+        System.err.println("  --rows N          height of the viewport in cells (default 100)");
+        System.err.println("  --size N          cell size in pixels (default 4)");
+        System.err.println("  --shadow          render in shadow mode");
+        System.err.println("  --gif             write OUTPUT as an animated GIF, otherwise");
+        System.err.println("                    OUTPUT is a directory of numbered PNG files");
+        System.err.println("  --delay MS        delay between GIF frames (default 100)");
+        System.err.println("  --threads N       number of encoding threads");
+    }
+
+    /**
+     * Headless entry point.
+     * @param args command line options, see usage().
+     * @return 0 on success, non-zero otherwise.
+     */
+    public static int main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        File recording = null;
+        double density = 0.35;
+        long seed = 1;
+        long from = 0;
+        long to = 100;
+        int x = 0;
+        int y = 0;
+        int columns = 100;
+        int rows = 100;
+        int size = 4;
+        boolean shadow = false;
+        Format format = Format.PNG;
+        int delay = 100;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        File output = null;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--recording": recording = new File(args[++i]); break;
+                    case "--soup":      density = Double.parseDouble(args[++i]); break;
+                    case "--seed":      seed = Long.parseLong(args[++i]); break;
+                    case "--from":      from = Long.parseLong(args[++i]); break;
+                    case "--to":        to = Long.parseLong(args[++i]); break;
+                    case "--x":         x = Integer.parseInt(args[++i]); break;
+                    case "--y":         y = Integer.parseInt(args[++i]); break;
+                    case "--columns":   columns = Integer.parseInt(args[++i]); break;
+                    case "--rows":      rows = Integer.parseInt(args[++i]); break;
+                    case "--size":      size = Integer.parseInt(args[++i]); break;
+                    case "--shadow":    shadow = true; break;
+                    case "--gif":       format = Format.GIF; break;
+                    case "--delay":     delay = Integer.parseInt(args[++i]); break;
+                    case "--threads":   threads = Integer.parseInt(args[++i]); break;
+                    default:            output = new File(args[i]); break;
+                }
+            }
+        } catch (RuntimeException e) {
+            usage();
+            return 1;
+        }
+
+        if (output == null || columns <= 0 || rows <= 0 || size <= 0 || to < from) {
+            usage();
+            return 1;
+        }
+
+        Model model = Model.create();
+
+        try {
+            if (recording != null) {
+                model.startPlayback(recording);
+            } else {
+                model.fillRegion(x, y, columns, rows, density, seed);
+            }
+
+            Exporter exporter = new Exporter(model, x, y, columns, rows, size, shadow, format, output, threads);
+            exporter.setDelay(delay);
+
+            final long start = System.nanoTime();
+            exporter.export(from, to);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Exported %d frames in %.2fs%n", to - from + 1, seconds);
+        } catch (IOException | InterruptedException e) {
+            Debug.critical(DD, e.getMessage());
+            return 1;
+        } finally {
+            model.stopPlayback();
+        }
+
+        return 0;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Heatmap is the class that counts how often each cell has changed state and
+ * remembers the generation in which each living cell was born, so that
+ * active regions and long lived objects can be displayed. The counters are
+ * updated as cells are toggled, except that restoring a saved landscape
+ * counts each cell that ends up in a different state as a single change.
+ *
+ * Values are reduced to one of LEVELS levels on a logarithmic scale, level 0
+ * meaning a value of 0 and level n a value below 2 to the power n.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.Arrays;
+
+public class Heatmap {
+
+    public static final int LEVELS = 16;
+
+    private final int height;
+
+    // Number of times each cell has changed state.
+    private final int[] activity;
+
+    // The generation each cell was last born in. Only the low 32 bits are
+    // kept, which still gives the right age for any age below 2^31.
+    private final int[] born;
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of Heatmap.
+     */
+
+    /**
+     * Constructor. Cells that are already alive are treated as having been
+     * born in the current generation.
+     * @param width of the landscape in cells.
+     * @param height of the landscape in cells.
+     * @param generation the current generation.
+     */
+    public Heatmap(int width, int height, long generation) {
+        this.height = height;
+        activity = new int[width * height];
+        born = new int[width * height];
+        Arrays.fill(born, (int)generation);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * Update the counters of a cell that has just changed state.
+     * @param x coordinate of the cell.
+     * @param y coordinate of the cell.
+     * @param living is true if the cell is now alive.
+     * @param generation in which the change was made.
+     */
+    public void toggled(int x, int y, boolean living, long generation) {
+        final int index = x * height + y;
+        if (activity[index] != Integer.MAX_VALUE)
+            ++activity[index];
+        if (living)
+            born[index] = (int)generation;
+    }
+
+    /**
+     * @return the number of times the cell has changed state.
+     */
+    public int getActivity(int x, int y) { return activity[x * height + y]; }
+
+    /**
+     * @return the number of generations since a living cell was born.
+     */
+    public int getAge(int x, int y, long generation) { return (int)generation - born[x * height + y]; }
+
+    /**
+     * Reduce a count to a level of the heatmap.
+     * @param value to reduce, 0 or more.
+     * @return the level, from 0 to LEVELS - 1.
+     */
+    public static int getLevel(int value) { return Math.min(LEVELS - 1, 32 - Integer.numberOfLeadingZeros(value)); }
+
+}
@@ -0,0 +1,411 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * History is the class that records the changes made to the landscape so
+ * that they can be undone. Each entry is the list of packed cell positions
+ * that were toggled, either by a generation or by a mouse edit. As toggling
+ * is its own inverse, re-applying an entry steps backwards and applying it
+ * again steps forwards. The packed positions are held in a fixed size ring
+ * buffer, so the oldest entries are discarded when memory runs out. A full
+ * keyframe of the living cells is taken periodically so that seeking a long
+ * way through the timeline does not need to walk every delta. Keyframes
+ * count against the same budget as the entries and are discarded with the
+ * oldest entry they follow.
+ *
+ * Entries are identified by an ever increasing sequence number. A position
+ * is the state of the landscape after all entries before it were applied,
+ * so the valid positions run from first to last inclusive and the current
+ * state is at cursor. Entries from cursor to last are available for redo.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import phillockett65.Debug.Debug;
+
+public class History {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    private static final int MAX_ENTRIES = 4096;
+    private static final int MAX_DATA = 1 << 21;
+    private static final int KEYFRAME_INTERVAL = 256;
+
+    private final Model model;
+
+    // Allocated by the first record().
+    private int[] data = null;
+    private long dataEnd = 0;
+
+    private final long[] starts = new long[MAX_ENTRIES];
+    private final int[] lengths = new int[MAX_ENTRIES];
+    private final long[] generations = new long[MAX_ENTRIES];
+    private final boolean[] steps = new boolean[MAX_ENTRIES];
+
+    private long first = 0;
+    private long cursor = 0;
+    private long last = 0;
+    private long baseGeneration = 0;
+    private int sinceKeyframe = 0;
+
+    private class Keyframe {
+        final long position;
+        final int[] cells;
+
+        Keyframe(long position, int[] cells) {
+            this.position = position;
+            this.cells = cells;
+        }
+    }
+
+    private final ArrayDeque<Keyframe> keyframes = new ArrayDeque<Keyframe>();
+    private long keyframeData = 0;
+
+
+
+    /************************************************************************
+     * General support code.
+     */
+
+    private static int slot(long seq) { return (int)(seq % MAX_ENTRIES); }
+    private static int index(long offset) { return (int)(offset % MAX_DATA); }
+
+    /**
+     * Get the generation of the landscape at the given position.
+     * @param position in the range first to last.
+     * @return the generation number.
+     */
+    private long generationAt(long position) {
+        if (position == first)
+            return baseGeneration;
+
+        return generations[slot(position-1)];
+    }
+
+    /**
+     * Calculate the number of cells held, entries and keyframes together.
+     * @param extra cells about to be added.
+     */
+    private long used(long extra) {
+        final long entries = (first < last) ? dataEnd - starts[slot(first)] : 0;
+
+        return entries + keyframeData + extra;
+    }
+
+    private void removeFirstKeyframe() {
+        keyframeData -= keyframes.removeFirst().cells.length;
+    }
+
+    private void removeLastKeyframe() {
+        keyframeData -= keyframes.removeLast().cells.length;
+    }
+
+    /**
+     * Discard the oldest entry along with any keyframe it invalidates.
+     */
+    private void evict() {
+        baseGeneration = generations[slot(first)];
+        ++first;
+
+        while (!keyframes.isEmpty() && keyframes.peekFirst().position < first)
+            removeFirstKeyframe();
+    }
+
+    /**
+     * Discard all entries available for redo.
+     */
+    private void truncate() {
+        if (cursor == last)
+            return;
+
+        dataEnd = starts[slot(cursor)];
+        last = cursor;
+
+        while (!keyframes.isEmpty() && keyframes.peekLast().position > cursor)
+            removeLastKeyframe();
+    }
+
+    /**
+     * Toggle all the cells of the given entry.
+     * @param seq of the entry to apply.
+     * @param toggles list to add the toggled cells to, or null.
+     */
+    private void apply(long seq, LinkedList<Integer> toggles) {
+        final int s = slot(seq);
+        final long start = starts[s];
+        final long end = start + lengths[s];
+        for (long offset = start; offset < end; ++offset) {
+            final int pos = data[index(offset)];
+            model.toggle(pos);
+            if (toggles != null)
+                toggles.add(pos);
+        }
+    }
+
+    /**
+     * Capture all the living cells as a keyframe at the current position,
+     * discarding the oldest entries to make room for it. A keyframe that
+     * would take more than half the budget is not worth the entries lost.
+     */
+    private void takeKeyframe() {
+        sinceKeyframe = 0;
+        final int[] cells = model.getLivingCells();
+        if (cells.length > MAX_DATA / 2) {
+            Debug.trace(DD, "takeKeyframe() skipped %d cells", cells.length);
+            return;
+        }
+
+        while (used(cells.length) > MAX_DATA) {
+            if (first < cursor)
+                evict();
+            else
+                removeFirstKeyframe();
+        }
+
+        keyframes.addLast(new Keyframe(cursor, cells));
+        keyframeData += cells.length;
+        Debug.trace(DD, "takeKeyframe() %d", cursor);
+    }
+
+    /**
+     * Walk the cursor one entry at a time to the target position.
+     * @param target position in the range first to last.
+     */
+    private void walk(long target) {
+        while (cursor > target) {
+            --cursor;
+            apply(cursor, null);
+        }
+        while (cursor < target) {
+            apply(cursor, null);
+            ++cursor;
+        }
+    }
+
+    /**
+     * Calculate the number of toggles needed to walk between two positions.
+     */
+    private long walkCost(long from, long to) {
+        long cost = 0;
+        for (long seq = Math.min(from, to); seq < Math.max(from, to); ++seq)
+            cost += lengths[slot(seq)];
+
+        return cost;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of History.
+     */
+
+    /**
+     * Constructor.
+     * @param model whose landscape the entries are applied to.
+     */
+    public History(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Discard all entries, leaving the current state as the only position.
+     * @param generation of the current state.
+     */
+    public void clear(long generation) {
+        first = cursor = last = 0;
+        dataEnd = 0;
+        baseGeneration = generation;
+        sinceKeyframe = KEYFRAME_INTERVAL;
+        keyframes.clear();
+        keyframeData = 0;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public long getFirst() { return first; }
+    public long getCursor() { return cursor; }
+    public long getLast() { return last; }
+
+    public boolean canStepBack() { return cursor > first; }
+    public boolean canStepForward() { return cursor < last; }
+
+    /**
+     * Record a list of toggled cells at the current position. Any entries
+     * available for redo are discarded.
+     * @param cells packed positions of the toggled cells.
+     * @param step is true if the cells were toggled by a generation, false
+     *             if they were toggled by an edit.
+     * @param generation of the landscape after the toggles were applied.
+     */
+    public void record(Collection<Integer> cells, boolean step, long generation) {
+        truncate();
+
+        final int length = cells.size();
+        if (data == null)
+            data = new int[MAX_DATA];
+        if (length > MAX_DATA) {
+            Debug.warning(DD, "History.record() too many cells " + length);
+            clear(generation);
+            return;
+        }
+
+        while ((last - first >= MAX_ENTRIES) || ((first < last) && (used(length) > MAX_DATA)))
+            evict();
+        while (used(length) > MAX_DATA)
+            removeFirstKeyframe();
+
+        final int s = slot(last);
+        starts[s] = dataEnd;
+        lengths[s] = length;
+        generations[s] = generation;
+        steps[s] = step;
+
+        Iterator<Integer> it = cells.iterator();
+        while (it.hasNext())
+            data[index(dataEnd++)] = it.next();
+
+        cursor = ++last;
+
+        if (step && ++sinceKeyframe >= KEYFRAME_INTERVAL)
+            takeKeyframe();
+    }
+
+    /**
+     * Undo the most recent entry.
+     * @return the list of toggled cells or null if there is nothing to undo.
+     */
+    public LinkedList<Integer> stepBack() {
+        if (!canStepBack())
+            return null;
+
+        LinkedList<Integer> toggles = new LinkedList<>();
+        --cursor;
+        apply(cursor, toggles);
+
+        return toggles;
+    }
+
+    /**
+     * Redo the most recently undone entry.
+     * @return the list of toggled cells or null if there is nothing to redo.
+     */
+    public LinkedList<Integer> stepForward() {
+        if (!canStepForward())
+            return null;
+
+        LinkedList<Integer> toggles = new LinkedList<>();
+        apply(cursor, toggles);
+        ++cursor;
+
+        return toggles;
+    }
+
+    /**
+     * @return true if the most recent entry was toggled by a generation.
+     */
+    public boolean isStep() {
+        return canStepBack() && steps[slot(cursor-1)];
+    }
+
+    /**
+     * @return true if the next entry available for redo is a generation.
+     */
+    public boolean isNextStep() {
+        return canStepForward() && steps[slot(cursor)];
+    }
+
+    /**
+     * @return the generation of the landscape at the current position.
+     */
+    public long getGeneration() { return generationAt(cursor); }
+
+    /**
+     * @return the oldest generation that can be returned to.
+     */
+    public long getFirstGeneration() { return generationAt(first); }
+
+    /**
+     * @return the newest generation that can be returned to.
+     */
+    public long getLastGeneration() { return generationAt(last); }
+
+    /**
+     * Move the landscape to the given position, either by walking the deltas
+     * from the current position or by restoring the nearest preceding
+     * keyframe and walking forward from there, whichever is cheaper.
+     * @param target position, clamped to the range first to last.
+     */
+    public void seek(long target) {
+        target = Math.max(first, Math.min(last, target));
+        if (target == cursor)
+            return;
+
+        Keyframe best = null;
+        for (Keyframe keyframe : keyframes) {
+            if (keyframe.position > target)
+                break;
+            best = keyframe;
+        }
+
+        final long cost = walkCost(cursor, target);
+        if (best != null) {
+            final long restore = model.getCellCount() + best.cells.length;
+            if (restore + walkCost(best.position, target) < cost) {
+                Debug.trace(DD, "seek() from keyframe %d", best.position);
+                model.clearLandscape();
+                for (int pos : best.cells)
+                    model.toggle(pos);
+                model.restoredLandscape();
+                cursor = best.position;
+            }
+        }
+
+        walk(target);
+    }
+
+    /**
+     * Move the landscape to the most recent position at or before the given
+     * generation.
+     * @param generation to seek to, clamped to the available range.
+     */
+    public void seekGeneration(long generation) {
+        long lo = first;
+        long hi = last;
+        while (lo < hi) {
+            final long mid = lo + (hi - lo + 1) / 2;
+            if (generationAt(mid) <= generation)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+
+        seek(lo);
+    }
+
+}
@@ -0,0 +1,319 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Isotropic is the class that compiles a rule in B/S notation into a table
+ * of the next state of a cell for each of the 512 possible 3 x 3
+ * neighbourhoods. Bits 0 to 8 of the index are the cells of the
+ * neighbourhood in row order, so bit 4 is the cell itself.
+ *
+ * As well as the outer totalistic rules, such as B3/S23, Hensel notation is
+ * accepted for isotropic non-totalistic rules. A count may be followed by
+ * letters selecting only some of the arrangements of that many neighbours,
+ * or by a minus and the letters of the arrangements to exclude, as in
+ * B2-a/S12. The letters of 5 to 8 neighbours describe the dead neighbours,
+ * so 5c is the complement of 3c.
+ */
+package phillockett65.GameOfLife;
+
+public class Isotropic {
+
+    public static final int SIZE = 512;
+
+    // The bits of the neighbours, excluding the cell itself.
+    private static final int NEIGHBOURS = SIZE - 1 - 0x010;
+
+    // The letters for each count of neighbours, in Hensel order.
+    private static final String[] LETTERS = {
+        "", "ce", "ceaikn", "ceaiknjqry", "ceaiknjqrytwz",
+        "ceaiknjqry", "ceaikn", "ce", ""
+    };
+
+    // An example neighbourhood for each letter of 1 to 4 neighbours.
+    private static final int[][] EXAMPLES = {
+        {},
+        { 0x001, 0x002 },
+        { 0x005, 0x00a, 0x003, 0x028, 0x021, 0x044 },
+        { 0x045, 0x02a, 0x00b, 0x007, 0x062, 0x00d, 0x00e, 0x046, 0x029, 0x061 },
+        { 0x145, 0x0aa, 0x00f, 0x02d, 0x063, 0x047, 0x06a, 0x066, 0x02b, 0x065, 0x069, 0x04e, 0x06c },
+    };
+
+    // The letter index of each neighbourhood, ignoring the cell itself.
+    private static final int[] LETTER = new int[SIZE];
+
+    static {
+        for (int count = 1; count <= 4; ++count) {
+            for (int letter = 0; letter < EXAMPLES[count].length; ++letter) {
+                final int example = EXAMPLES[count][letter];
+                for (int transform = 0; transform < 8; ++transform) {
+                    final int pattern = transform(example, transform);
+                    LETTER[pattern] = letter;
+                    if (count < 4)
+                        LETTER[pattern ^ NEIGHBOURS] = letter;
+                }
+            }
+        }
+        for (int index = 0; index < SIZE; ++index)
+            LETTER[index] = LETTER[index & NEIGHBOURS];
+    }
+
+    private final byte[] table = new byte[SIZE];
+
+    // Bit n of the mask for a count is set if letter n is in the rule.
+    private final int[] birth = new int[9];
+    private final int[] survive = new int[9];
+
+
+
+    /************************************************************************
+     * Support code for neighbourhoods.
+     */
+
+    /**
+     * Apply one of the eight rotations and reflections to a neighbourhood.
+     * @param index of the neighbourhood.
+     * @param transform 0 to 7, bit 0 mirrors x, bit 1 mirrors y and bit 2
+     *                  swaps x and y.
+     * @return the index of the transformed neighbourhood.
+     */
+    private static int transform(int index, int transform) {
+        int result = 0;
+        for (int bit = 0; bit < 9; ++bit) {
+            if ((index & (1 << bit)) == 0)
+                continue;
+
+            int x = bit % 3;
+            int y = bit / 3;
+            if ((transform & 1) != 0)
+                x = 2 - x;
+            if ((transform & 2) != 0)
+                y = 2 - y;
+            if ((transform & 4) != 0) {
+                final int t = x;
+                x = y;
+                y = t;
+            }
+            result |= 1 << (y * 3 + x);
+        }
+
+        return result;
+    }
+
+    private static int getAll(int count) { return (1 << Math.max(1, LETTERS[count].length())) - 1; }
+
+    /**
+     * @return true if the rule selects the given neighbourhood.
+     */
+    private static boolean isSelected(int[] masks, int index) {
+        final int count = Integer.bitCount(index & NEIGHBOURS);
+        return (masks[count] & (1 << LETTER[index])) != 0;
+    }
+
+
+
+    /************************************************************************
+     * Support code for parsing rules.
+     */
+
+    /**
+     * Parse the counts of one half of a rule, such as 2-a3 in B2-a3.
+     * @return the masks of selected letters for each count.
+     */
+    private static int[] parseCounts(String text, String rule) {
+        int[] masks = new int[9];
+        int i = 0;
+        while (i < text.length()) {
+            final char digit = text.charAt(i++);
+            if (digit < '1' || digit > '8')
+                throw new IllegalArgumentException("Counts must be from 1 to 8 in " + rule);
+
+            final int count = digit - '0';
+            final boolean exclude = i < text.length() && text.charAt(i) == '-';
+            if (exclude)
+                ++i;
+
+            int letters = 0;
+            for (; i < text.length() && Character.isLetter(text.charAt(i)); ++i) {
+                final int letter = LETTERS[count].indexOf(text.charAt(i));
+                if (letter < 0)
+                    throw new IllegalArgumentException("Invalid letter for " + count + " in " + rule);
+                letters |= 1 << letter;
+            }
+            if (exclude && letters == 0)
+                throw new IllegalArgumentException("Missing letters for " + count + " in " + rule);
+
+            if (letters == 0)
+                masks[count] = getAll(count);
+            else
+                masks[count] |= exclude ? getAll(count) & ~letters : letters;
+        }
+
+        return masks;
+    }
+
+    /**
+     * Parse a rule such as B3/S23 or B2-a/S12.
+     * @param text of the rule, case insensitive apart from the letters.
+     * @return the rule.
+     * @throws IllegalArgumentException if the rule is invalid.
+     */
+    public static Isotropic parse(String text) {
+        final String rule = text.trim();
+        int[] birth = null;
+        int[] survive = null;
+
+        for (String half : rule.split("/")) {
+            if (half.isEmpty())
+                throw new IllegalArgumentException("Invalid rule " + text);
+
+            final String counts = half.substring(1);
+            switch (half.charAt(0)) {
+                case 'B': case 'b':
+                    birth = parseCounts(counts, text);
+                    break;
+
+                case 'S': case 's':
+                    survive = parseCounts(counts, text);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Invalid rule " + text);
+            }
+        }
+        if (birth == null || survive == null)
+            throw new IllegalArgumentException("Birth and survival counts are required in " + text);
+
+        return new Isotropic(birth, survive);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of Isotropic.
+     */
+
+    /**
+     * Constructor.
+     * @param birth masks of the letters selected for each count, where a
+     *              dead cell is born.
+     * @param survive masks of the letters selected for each count, where a
+     *                living cell survives.
+     */
+    public Isotropic(int[] birth, int[] survive) {
+        for (int count = 1; count <= 8; ++count) {
+            this.birth[count] = birth[count] & getAll(count);
+            this.survive[count] = survive[count] & getAll(count);
+        }
+
+        for (int index = 0; index < SIZE; ++index) {
+            final boolean living = (index & 0x010) != 0;
+            table[index] = (byte)(isSelected(living ? this.survive : this.birth, index) ? 1 : 0);
+        }
+    }
+
+    /**
+     * Constructor for an outer totalistic rule.
+     * @param birthMask bit n is set if a dead cell with n neighbours is born.
+     * @param surviveMask bit n is set if a living cell with n neighbours
+     *                    survives.
+     */
+    public Isotropic(int birthMask, int surviveMask) {
+        this(getMasks(birthMask), getMasks(surviveMask));
+    }
+
+    private static int[] getMasks(int mask) {
+        int[] masks = new int[9];
+        for (int count = 1; count <= 8; ++count)
+            if ((mask & (1 << count)) != 0)
+                masks[count] = getAll(count);
+
+        return masks;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * @return the next state of the cell, 0 or 1, for each neighbourhood.
+     */
+    public byte[] getTable() { return table; }
+
+    /**
+     * @return true if every count is either wholly in or wholly out of the
+     *         rule, so the check boxes can represent it.
+     */
+    public boolean isTotalistic() {
+        for (int count = 1; count <= 8; ++count) {
+            if (birth[count] != 0 && birth[count] != getAll(count))
+                return false;
+            if (survive[count] != 0 && survive[count] != getAll(count))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if a dead cell with count neighbours can be born.
+     */
+    public boolean isBirth(int count) { return birth[count] != 0; }
+
+    /**
+     * @return true if a living cell with count neighbours can survive.
+     */
+    public boolean isSurvive(int count) { return survive[count] != 0; }
+
+    private static String getCounts(int[] masks) {
+        StringBuilder builder = new StringBuilder();
+        for (int count = 1; count <= 8; ++count) {
+            final int mask = masks[count];
+            if (mask == 0)
+                continue;
+
+            builder.append(count);
+            final int all = getAll(count);
+            if (mask == all)
+                continue;
+
+            // Use whichever of the included or excluded letters is shorter.
+            final boolean exclude = Integer.bitCount(mask) * 2 > Integer.bitCount(all);
+            if (exclude)
+                builder.append('-');
+            final String letters = LETTERS[count];
+            for (int letter = 0; letter < letters.length(); ++letter)
+                if (((mask & (1 << letter)) != 0) != exclude)
+                    builder.append(letters.charAt(letter));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @return the rule in B/S notation, such as B2-a/S12.
+     */
+    @Override
+    public String toString() {
+        return "B" + getCounts(birth) + "/S" + getCounts(survive);
+    }
+
+}
@@ -0,0 +1,242 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LargerThanLife is the class that applies a Larger than Life rule, where
+ * the neighbourhood is the square of cells within a given radius and a cell
+ * survives or is born if its count of living neighbours falls in a range.
+ * Rules use the notation R5,C0,M1,S34..58,B34..45,NM where R is the radius
+ * (1 to 10), C the number of states (only 0 or 2 are supported), M is 1 if
+ * the cell itself is counted, S and B the survival and birth ranges and NM
+ * selects the Moore neighbourhood, the only one supported.
+ *
+ * Every generation a summed-area table is built over the region being
+ * evaluated plus a border of the radius, reading the border through the
+ * topology of the Model. Each neighbour count is then four table lookups,
+ * whatever the radius.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.LinkedList;
+
+public class LargerThanLife {
+
+    public static final int MAX_RADIUS = 10;
+
+    private final int radius;
+    private final boolean middle;
+    private final int surviveMin;
+    private final int surviveMax;
+    private final int birthMin;
+    private final int birthMax;
+
+    // Summed-area table, entry (x, y) is the count of the cells above and
+    // to the left of it.
+    private int[] table = new int[0];
+
+
+
+    /************************************************************************
+     * Support code for parsing rules.
+     */
+
+    /**
+     * @return true if the text looks like a Larger than Life rule rather
+     *         than B/S notation.
+     */
+    public static boolean isRule(String text) {
+        return text.trim().toUpperCase().startsWith("R");
+    }
+
+    private static int[] parseRange(String text, String rule) {
+        final int dots = text.indexOf("..");
+        try {
+            if (dots < 0) {
+                final int value = Integer.parseInt(text);
+                return new int[] { value, value };
+            }
+
+            return new int[] { Integer.parseInt(text.substring(0, dots)), Integer.parseInt(text.substring(dots + 2)) };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid range in " + rule);
+        }
+    }
+
+    /**
+     * Parse a rule such as R5,C0,M1,S34..58,B34..45,NM.
+     * @param text of the rule, case insensitive.
+     * @return the rule.
+     * @throws IllegalArgumentException if the rule is invalid or unsupported.
+     */
+    public static LargerThanLife parse(String text) {
+        int radius = -1;
+        boolean middle = false;
+        int[] survive = null;
+        int[] birth = null;
+
+        for (String field : text.trim().toUpperCase().split(",")) {
+            if (field.isEmpty())
+                throw new IllegalArgumentException("Invalid rule " + text);
+
+            final String value = field.substring(1);
+            switch (field.charAt(0)) {
+                case 'R':
+                    radius = parseRange(value, text)[0];
+                    break;
+
+                case 'C':
+                    if (!value.equals("0") && !value.equals("2"))
+                        throw new IllegalArgumentException("Only 2 states are supported in " + text);
+                    break;
+
+                case 'M':
+                    middle = value.equals("1");
+                    break;
+
+                case 'S':
+                    survive = parseRange(value, text);
+                    break;
+
+                case 'B':
+                    birth = parseRange(value, text);
+                    break;
+
+                case 'N':
+                    if (!value.equals("M"))
+                        throw new IllegalArgumentException("Only the Moore neighbourhood is supported in " + text);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Invalid rule " + text);
+            }
+        }
+
+        if (radius < 1 || radius > MAX_RADIUS)
+            throw new IllegalArgumentException("Radius must be from 1 to " + MAX_RADIUS + " in " + text);
+        if (survive == null || birth == null)
+            throw new IllegalArgumentException("Survival and birth ranges are required in " + text);
+        if (birth[0] < 1)
+            throw new IllegalArgumentException("Birth without living neighbours is not supported in " + text);
+
+        return new LargerThanLife(radius, middle, survive[0], survive[1], birth[0], birth[1]);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of LargerThanLife.
+     */
+
+    /**
+     * Constructor.
+     * @param radius of the neighbourhood, 1 to MAX_RADIUS.
+     * @param middle is true if a cell counts itself as a neighbour.
+     * @param surviveMin fewest neighbours for a living cell to survive.
+     * @param surviveMax most neighbours for a living cell to survive.
+     * @param birthMin fewest neighbours for a dead cell to be born.
+     * @param birthMax most neighbours for a dead cell to be born.
+     */
+    public LargerThanLife(int radius, boolean middle, int surviveMin, int surviveMax, int birthMin, int birthMax) {
+        this.radius = radius;
+        this.middle = middle;
+        this.surviveMin = surviveMin;
+        this.surviveMax = surviveMax;
+        this.birthMin = birthMin;
+        this.birthMax = birthMax;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public int getRadius() { return radius; }
+
+    /**
+     * @return the rule in R5,C0,M1,S34..58,B34..45,NM notation.
+     */
+    @Override
+    public String toString() {
+        return "R" + radius + ",C0,M" + (middle ? 1 : 0) +
+            ",S" + surviveMin + ".." + surviveMax +
+            ",B" + birthMin + ".." + birthMax + ",NM";
+    }
+
+    /**
+     * Apply the rule to a rectangular region and add all cells that should
+     * change state to the toggles list.
+     * @param model providing the cells, including those beyond the edges.
+     * @param left most column of the region.
+     * @param right most column of the region.
+     * @param top most row of the region.
+     * @param bottom most row of the region.
+     * @param toggles list of cells that should change state.
+     */
+    public void nextGenRegion(Model model, int left, int right, int top, int bottom, LinkedList<Integer> toggles) {
+        // The table covers the region plus the radius on every side, with
+        // an extra leading row and column of zeros.
+        final int w = right - left + 1 + 2 * radius;
+        final int h = bottom - top + 1 + 2 * radius;
+        final int stride = h + 1;
+        if (table.length < (w + 1) * stride)
+            table = new int[(w + 1) * stride];
+
+        for (int y = 0; y <= h; ++y)
+            table[y] = 0;
+
+        for (int i = 1; i <= w; ++i) {
+            final int x = left - radius + i - 1;
+            final int column = i * stride;
+            final int previous = column - stride;
+            int sum = 0;
+            table[column] = 0;
+            for (int j = 1; j <= h; ++j) {
+                if (model.isLivingBeyond(x, top - radius + j - 1))
+                    ++sum;
+                table[column + j] = table[previous + j] + sum;
+            }
+        }
+
+        // The neighbourhood of cell (x, y) covers table columns i - radius to
+        // i + radius and rows j - radius to j + radius inclusive, where i and
+        // j are its own offsets into the table.
+        final int span = 2 * radius + 1;
+        for (int x = left; x <= right; ++x) {
+            final int low = (x - left) * stride;
+            final int high = low + span * stride;
+            for (int y = top; y <= bottom; ++y) {
+                final int j = y - top;
+                int count = table[high + j + span] - table[low + j + span] - table[high + j] + table[low + j];
+
+                final boolean living = model.isLiving(x, y);
+                if (living && !middle)
+                    --count;
+
+                final boolean next = living ?
+                    (count >= surviveMin && count <= surviveMax) :
+                    (count >= birthMin && count <= birthMax);
+                if (next != living)
+                    toggles.add(Model.encode(x, y));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,529 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Macrocell is the class that reads and writes two state patterns in Golly's
+ * Macrocell (.mc) format without expanding them. The format describes a
+ * quadtree in which identical subtrees are shared: each line defines a node,
+ * numbered from 1, either an 8 x 8 leaf of '.', '*' and '$' or a node of
+ * level k (2^k cells square) given by the numbers of its four quadrants, 0
+ * being empty. Children are always defined before their parents and the last
+ * node is the root, which is centred on the origin.
+ *
+ * The file is read a line at a time into arrays indexed by node number, so
+ * the memory needed is proportional to the number of unique nodes however
+ * large the pattern is. The bounding box of each node is worked out as it is
+ * read, so loading a region only visits the nodes that have living cells in
+ * it. Writing builds the quadtree of the landscape bottom up, sharing
+ * identical nodes, and writes each node as soon as it is first seen.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import phillockett65.Debug.Debug;
+
+public class Macrocell {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    private static final String HEADER = "[M2]";
+    private static final int LEAF_LEVEL = 3;
+    private static final int LEAF_SIZE = 8;
+
+    // Deepest level accepted, which keeps every coordinate within a long.
+    private static final int MAX_LEVEL = 62;
+
+    // Node 0 is the empty node of any level.
+    private int count = 1;
+    private byte[] levels = new byte[1024];
+    private long[] leaves = new long[1024];
+    private int[] children = new int[4 * 1024];
+
+    // Bounding box of the living cells of each node, relative to its top
+    // left corner, as left, top, right and bottom. Empty nodes have a left
+    // of Long.MAX_VALUE.
+    private long[] bounds = new long[4 * 1024];
+
+    private String rule = null;
+    private long generation = 0;
+
+
+
+    /************************************************************************
+     * Support code for reading.
+     */
+
+    private Macrocell() {
+        bounds[0] = Long.MAX_VALUE;
+    }
+
+    /**
+     * Make room for another node.
+     */
+    private int addNode(int level) {
+        if (count == levels.length) {
+            final int length = levels.length * 2;
+            levels = Arrays.copyOf(levels, length);
+            leaves = Arrays.copyOf(leaves, length);
+            children = Arrays.copyOf(children, 4 * length);
+            bounds = Arrays.copyOf(bounds, 4 * length);
+        }
+        levels[count] = (byte)level;
+
+        return count++;
+    }
+
+    /**
+     * Parse a leaf line, in which '*' is a living cell, '.' is a dead cell
+     * and '$' ends a row. Trailing dead cells and empty rows are omitted.
+     */
+    private void addLeaf(String line) throws IOException {
+        long bits = 0L;
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < line.length(); ++i) {
+            final char c = line.charAt(i);
+            if (c == '$') {
+                x = 0;
+                ++y;
+            } else if (c == '.' || c == '*') {
+                if (x >= LEAF_SIZE || y >= LEAF_SIZE)
+                    throw new IOException("Leaf too large: " + line);
+                if (c == '*')
+                    bits |= 1L << (y * LEAF_SIZE + x);
+                ++x;
+            } else if (!Character.isWhitespace(c)) {
+                throw new IOException("Invalid leaf: " + line);
+            }
+        }
+
+        final int node = addNode(LEAF_LEVEL);
+        leaves[node] = bits;
+
+        final int b = node * 4;
+        if (bits == 0L) {
+            bounds[b] = Long.MAX_VALUE;
+            return;
+        }
+        bounds[b] = LEAF_SIZE;
+        bounds[b+1] = LEAF_SIZE;
+        bounds[b+2] = -1;
+        bounds[b+3] = -1;
+        for (int i = 0; i < LEAF_SIZE * LEAF_SIZE; ++i) {
+            if ((bits & (1L << i)) != 0) {
+                bounds[b] = Math.min(bounds[b], i % LEAF_SIZE);
+                bounds[b+1] = Math.min(bounds[b+1], i / LEAF_SIZE);
+                bounds[b+2] = Math.max(bounds[b+2], i % LEAF_SIZE);
+                bounds[b+3] = Math.max(bounds[b+3], i / LEAF_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Parse a node line of the form "level nw ne sw se".
+     */
+    private void addBranch(String line) throws IOException {
+        final String[] fields = line.trim().split("\\s+");
+        if (fields.length != 5)
+            throw new IOException("Invalid node: " + line);
+
+        final int level;
+        final int[] quadrants = new int[4];
+        try {
+            level = Integer.parseInt(fields[0]);
+            for (int i = 0; i < 4; ++i)
+                quadrants[i] = Integer.parseInt(fields[i+1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid node: " + line);
+        }
+
+        if (level < LEAF_LEVEL)
+            throw new IOException("Only two state patterns are supported");
+        if (level <= LEAF_LEVEL || level > MAX_LEVEL)
+            throw new IOException("Invalid level: " + line);
+        for (int child : quadrants)
+            if (child < 0 || child >= count || (child != 0 && levels[child] != level - 1))
+                throw new IOException("Invalid child: " + line);
+
+        final int node = addNode(level);
+        System.arraycopy(quadrants, 0, children, node * 4, 4);
+
+        // Combine the bounding boxes of the quadrants.
+        final long half = 1L << (level - 1);
+        final int b = node * 4;
+        bounds[b] = Long.MAX_VALUE;
+        for (int i = 0; i < 4; ++i) {
+            final int c = quadrants[i] * 4;
+            if (bounds[c] == Long.MAX_VALUE)
+                continue;
+
+            final long dx = (i & 1) * half;
+            final long dy = (i >> 1) * half;
+            if (bounds[b] == Long.MAX_VALUE) {
+                bounds[b] = bounds[c] + dx;
+                bounds[b+1] = bounds[c+1] + dy;
+                bounds[b+2] = bounds[c+2] + dx;
+                bounds[b+3] = bounds[c+3] + dy;
+            } else {
+                bounds[b] = Math.min(bounds[b], bounds[c] + dx);
+                bounds[b+1] = Math.min(bounds[b+1], bounds[c+1] + dy);
+                bounds[b+2] = Math.max(bounds[b+2], bounds[c+2] + dx);
+                bounds[b+3] = Math.max(bounds[b+3], bounds[c+3] + dy);
+            }
+        }
+    }
+
+    /**
+     * Read a pattern a line at a time.
+     * @param reader positioned at the start of the pattern.
+     * @return the pattern.
+     * @throws IOException if it cannot be read or is not a valid two state
+     *                     Macrocell pattern.
+     */
+    public static Macrocell read(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || !line.startsWith(HEADER))
+            throw new IOException("Not a Macrocell file");
+
+        Macrocell pattern = new Macrocell();
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty())
+                continue;
+
+            final char c = line.charAt(0);
+            if (c == '#') {
+                if (line.startsWith("#R"))
+                    pattern.rule = line.substring(2).trim();
+                else if (line.startsWith("#G")) {
+                    try {
+                        pattern.generation = Long.parseLong(line.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        Debug.warning(DD, "Macrocell.read() invalid %s", line);
+                    }
+                }
+            } else if (c == '.' || c == '*' || c == '$') {
+                pattern.addLeaf(line);
+            } else {
+                pattern.addBranch(line);
+            }
+        }
+
+        if (pattern.count == 1)
+            throw new IOException("No nodes in Macrocell file");
+
+        Debug.trace(DD, "Macrocell.read() %d nodes at level %d", pattern.getNodes(), pattern.getLevel());
+
+        return pattern;
+    }
+
+    /**
+     * Read a pattern from a file.
+     */
+    public static Macrocell read(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            return read(reader);
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    private int getRoot() { return count - 1; }
+
+    /**
+     * @return the rule given in the file, or null if there was none.
+     */
+    public String getRule() { return rule; }
+    public long getGeneration() { return generation; }
+    public int getNodes() { return count - 1; }
+    public int getLevel() { return levels[getRoot()]; }
+
+    /**
+     * @return the coordinate of the left and top edges of the root.
+     */
+    private long getOrigin() { return -(1L << (getLevel() - 1)); }
+
+    /**
+     * @return the bounding box of the living cells as left, top, right and
+     *         bottom, inclusive, or null if there are none.
+     */
+    public long[] getBounds() {
+        final int b = getRoot() * 4;
+        if (bounds[b] == Long.MAX_VALUE)
+            return null;
+
+        final long origin = getOrigin();
+
+        return new long[] { bounds[b] + origin, bounds[b+1] + origin, bounds[b+2] + origin, bounds[b+3] + origin };
+    }
+
+    /**
+     * Collect the living cells of a node that are in a region, visiting only
+     * the quadrants that have living cells in it.
+     */
+    private int collect(int node, long x0, long y0, long left, long top, int width, int height, int[] cells, int n) {
+        final int b = node * 4;
+        if (bounds[b] == Long.MAX_VALUE ||
+            x0 + bounds[b] >= left + width || x0 + bounds[b+2] < left ||
+            y0 + bounds[b+1] >= top + height || y0 + bounds[b+3] < top)
+            return n;
+
+        if (levels[node] == LEAF_LEVEL) {
+            final long bits = leaves[node];
+            for (int i = 0; i < LEAF_SIZE * LEAF_SIZE; ++i) {
+                if ((bits & (1L << i)) == 0)
+                    continue;
+
+                final long x = x0 + i % LEAF_SIZE - left;
+                final long y = y0 + i / LEAF_SIZE - top;
+                if (x >= 0 && x < width && y >= 0 && y < height)
+                    cells[n++] = Model.encode((int)x, (int)y);
+            }
+
+            return n;
+        }
+
+        final long half = 1L << (levels[node] - 1);
+        for (int i = 0; i < 4; ++i) {
+            final int child = children[b + i];
+            if (child != 0)
+                n = collect(child, x0 + (i & 1) * half, y0 + (i >> 1) * half, left, top, width, height, cells, n);
+        }
+
+        return n;
+    }
+
+    /**
+     * Bring the living cells of a region of the pattern to life in the
+     * Model as a single edit. Cells already alive are left alone.
+     * @param model to load the region into.
+     * @param left most column of the region, in pattern coordinates.
+     * @param top most row of the region, in pattern coordinates.
+     * @param width of the region, limited to the width of the Model.
+     * @param height of the region, limited to the height of the Model.
+     * @param x column of the Model for the left of the region, which wraps
+     *          around the edges.
+     * @param y row of the Model for the top of the region.
+     * @return the number of cells changed.
+     */
+    public int load(Model model, long left, long top, int width, int height, int x, int y) {
+        final int w = Math.min(width, model.getWidth());
+        final int h = Math.min(height, model.getHeight());
+        if (w <= 0 || h <= 0)
+            return 0;
+
+        int[] cells = new int[1024];
+        int n = 0;
+        final long origin = getOrigin();
+
+        // Collect a leaf's worth of cells at a time so the array only grows
+        // with the living cells found.
+        for (long row = 0; row < h; row += LEAF_SIZE) {
+            final int rows = (int)Math.min(LEAF_SIZE, h - row);
+            if (cells.length - n < w * rows)
+                cells = Arrays.copyOf(cells, Math.max(cells.length * 2, n + w * rows));
+
+            final int first = n;
+            n = collect(getRoot(), origin, origin, left, top + row, w, rows, cells, n);
+            for (int i = first; i < n; ++i)
+                cells[i] += (int)row;
+        }
+        Debug.trace(DD, "Macrocell.load() %d living cells", n);
+
+        return model.stamp(Arrays.copyOf(cells, n), w, h, x, y, 0);
+    }
+
+
+
+    /************************************************************************
+     * Support code for writing.
+     */
+
+    /**
+     * Identifies a node above the leaves by its quadrants.
+     */
+    private static class Branch {
+        final int nw, ne, sw, se;
+
+        Branch(int nw, int ne, int sw, int se) {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Branch))
+                return false;
+
+            final Branch branch = (Branch)other;
+            return nw == branch.nw && ne == branch.ne && sw == branch.sw && se == branch.se;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((nw * 31 + ne) * 31 + sw) * 31 + se;
+        }
+    }
+
+    /**
+     * Builds the quadtree of a Model, writing each new node as it is found.
+     */
+    private static class Builder {
+        private final Model model;
+        private final Writer out;
+        private final Map<Long, Integer> leafNodes = new HashMap<Long, Integer>();
+        private final Map<Branch, Integer> branchNodes = new HashMap<Branch, Integer>();
+        private int count = 0;
+
+        Builder(Model model, Writer out) {
+            this.model = model;
+            this.out = out;
+        }
+
+        int getCount() { return count; }
+
+        private int writeLeaf(long bits) throws IOException {
+            Integer node = leafNodes.get(bits);
+            if (node != null)
+                return node;
+
+            StringBuilder line = new StringBuilder();
+            int rows = 0;
+            for (int y = 0; y < LEAF_SIZE; ++y)
+                if (((bits >>> (y * LEAF_SIZE)) & 0xFF) != 0)
+                    rows = y + 1;
+            for (int y = 0; y < rows; ++y) {
+                final long row = (bits >>> (y * LEAF_SIZE)) & 0xFF;
+                for (int x = 0; x < LEAF_SIZE && (row >>> x) != 0; ++x)
+                    line.append(((row >>> x) & 1) != 0 ? '*' : '.');
+                line.append('$');
+            }
+            out.write(line.append('\n').toString());
+
+            leafNodes.put(bits, ++count);
+
+            return count;
+        }
+
+        private int writeBranch(int level, int nw, int ne, int sw, int se) throws IOException {
+            final Branch branch = new Branch(nw, ne, sw, se);
+            Integer node = branchNodes.get(branch);
+            if (node != null)
+                return node;
+
+            out.write(level + " " + nw + " " + ne + " " + sw + " " + se + "\n");
+            branchNodes.put(branch, ++count);
+
+            return count;
+        }
+
+        /**
+         * Build the node of a square of the landscape.
+         * @return the node number, or 0 if the square is empty.
+         */
+        int build(int level, int x0, int y0) throws IOException {
+            final int width = model.getWidth();
+            final int height = model.getHeight();
+            if (x0 >= width || y0 >= height || x0 + (1 << level) <= 0 || y0 + (1 << level) <= 0)
+                return 0;
+
+            if (level == LEAF_LEVEL) {
+                long bits = 0L;
+                for (int y = 0; y < LEAF_SIZE; ++y)
+                    for (int x = 0; x < LEAF_SIZE; ++x) {
+                        final int px = x0 + x;
+                        final int py = y0 + y;
+                        if (px >= 0 && px < width && py >= 0 && py < height && model.isLiving(px, py))
+                            bits |= 1L << (y * LEAF_SIZE + x);
+                    }
+
+                return (bits == 0L) ? 0 : writeLeaf(bits);
+            }
+
+            final int half = 1 << (level - 1);
+            final int nw = build(level - 1, x0, y0);
+            final int ne = build(level - 1, x0 + half, y0);
+            final int sw = build(level - 1, x0, y0 + half);
+            final int se = build(level - 1, x0 + half, y0 + half);
+            if ((nw | ne | sw | se) == 0)
+                return 0;
+
+            return writeBranch(level, nw, ne, sw, se);
+        }
+    }
+
+    /**
+     * Write the landscape of a Model as a pattern, with cell (x, y) of the
+     * Model at (x, y) in the pattern.
+     * @param model to write.
+     * @param out to write the pattern to.
+     * @return the number of nodes written.
+     * @throws IOException if the pattern cannot be written.
+     */
+    public static int write(Model model, Writer out) throws IOException {
+        out.write(HEADER + " (GameOfLife)\n");
+        out.write("#R " + model.getRuleString() + "\n");
+        if (model.getGeneration() != 0)
+            out.write("#G " + model.getGeneration() + "\n");
+
+        // The root is centred on the origin so it must reach twice as far
+        // as the landscape.
+        int level = LEAF_LEVEL;
+        while ((1 << (level - 1)) < Math.max(model.getWidth(), model.getHeight()))
+            ++level;
+
+        Builder builder = new Builder(model, out);
+        final int origin = -(1 << (level - 1));
+        if (builder.build(level, origin, origin) == 0) {
+            // An empty leaf stands for an empty landscape.
+            out.write("$\n");
+            return 1;
+        }
+        Debug.trace(DD, "Macrocell.write() %d nodes at level %d", builder.getCount(), level);
+
+        return builder.getCount();
+    }
+
+    /**
+     * Write the landscape of a Model to a file.
+     */
+    public static int write(Model model, File file) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            return write(model, out);
+        }
+    }
+
+}
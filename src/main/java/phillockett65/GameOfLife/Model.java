@@ -24,9 +24,22 @@
  */
 package phillockett65.GameOfLife;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
 
+import javafx.concurrent.Task;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import phillockett65.Debug.Debug;
@@ -74,19 +87,34 @@ public class Model {
      */
 
     /**
-     * Private default constructor - part of the Singleton Design Pattern.
-     * Called at initialization only, constructs the single private instance.
+     * Private default constructor. The world shown by the GUI is constructed
+     * at initialization, any others by create().
      */
     private Model() {
 
     }
 
     /**
-     * Singleton implementation.
-     * @return the only instance of the model.
+     * @return the world shown by the GUI.
      */
     public static Model getInstance() { return model; }
 
+    /**
+     * Construct a further world, independent of the one shown by the GUI,
+     * with its own rules, landscape and engines, initialised to the default
+     * settings. It has no stage, scene or controller, and the packed cell
+     * positions of encode() apply to every world as they are all the same
+     * size. A world may only be used by one thread at a time.
+     * @return the new world.
+     */
+    public static Model create() {
+        Model world = new Model();
+        world.initialize();
+        world.defaultSettings();
+
+        return world;
+    }
+
     /**
      * Called by the controller after the constructor to initialise any 
      * objects after the controls have been initialised.
@@ -111,6 +139,7 @@ public class Model {
         controller = primaryController;
         if (!readData())
             defaultSettings();
+        Startup.phase("settings");
     }
 
     public Stage getStage() { return stage; }
@@ -146,6 +175,7 @@ public class Model {
         initSpeed();
         initSize();
         initPlay();
+        initTopology();
     }
 
 
@@ -159,7 +189,7 @@ public class Model {
      * @return true if data successfully read from disc, false otherwise.
      */
     private boolean readData() {
-        if (DataStore1.readData() == true) {
+        if (DataStore1.readData(this) == true) {
             return true;
         }
 
@@ -175,9 +205,17 @@ public class Model {
     private ArrayList<Boolean> liveCheck;
 
     ArrayList<Boolean> getLiveChecks() { return liveCheck; }
-    void setLiveChecks(ArrayList<Boolean> checks) { liveCheck = checks; }
+    void setLiveChecks(ArrayList<Boolean> checks) {
+        liveCheck = checks;
+        buildRuleTable();
+    }
 
-    public void setLiveCheck(int index, boolean state) { liveCheck.set(index, state); }
+    public void setLiveCheck(int index, boolean state) {
+        liveCheck.set(index, state);
+        largerThanLife = null;
+        isotropic = null;
+        buildRuleTable();
+    }
     public boolean isLiveCheck(int index) { return liveCheck.get(index); }
 
     public String getLiveCheckString() {
@@ -208,9 +246,17 @@ public class Model {
     private ArrayList<Boolean> birthCheck;
 
     ArrayList<Boolean> getBirthChecks() { return birthCheck; }
-    void setBirthChecks(ArrayList<Boolean> checks) { birthCheck = checks; }
+    void setBirthChecks(ArrayList<Boolean> checks) {
+        birthCheck = checks;
+        buildRuleTable();
+    }
 
-    public void setBirthCheck(int index, boolean state) { birthCheck.set(index, state); }
+    public void setBirthCheck(int index, boolean state) {
+        birthCheck.set(index, state);
+        largerThanLife = null;
+        isotropic = null;
+        buildRuleTable();
+    }
     public boolean isBirthCheck(int index) { return birthCheck.get(index); }
 
     public String getBirthCheckString() {
@@ -252,6 +298,7 @@ public class Model {
         for (int i = 0; i <=8; ++i) {
             birthCheck.add(false);
         }
+        buildRuleTable();
     }
 
 
@@ -373,7 +420,9 @@ public class Model {
      * Support code for "Earth" canvas.
      */
 
-    private byte[][] landscape;
+    // The cells plus a one cell halo on every side, see refreshHalo(). Not
+    // allocated until the first cell is brought to life.
+    private byte[][] landscape = null;
     public double getEarthWidth() {
         double width = getScene().getWidth();
         
@@ -383,159 +432,1322 @@ public class Model {
     public double getEarthHeight() {
         double height = model.getScene().getHeight();
         
-        return height;
+        return height - controller.getMenuBarHeight();
     }
 
-    private int livingNeighbours(final int l, final int x, final int r, final int u, final int y, final int d) {
-        int count = 0;
-        // Debug.info(DD, "livingNeighboursSafe(" + x + ", " + y + ")");
+    public int getWidth() { return MAX_XPOS; }
+    public int getHeight() { return MAX_YPOS; }
+
+    /**
+     * Copy the cells on the edges of the landscape into the halo according
+     * to the topology, so that every cell can be evaluated by the same
+     * kernel. The halo columns are filled first so that the halo rows pick
+     * up the corners from them.
+     */
+    private void refreshHalo() {
+        if (topology == Topology.BOUNDED)
+            return;
+
+        System.arraycopy(landscape[MAX_XPOS], 0, landscape[0], 0, MAX_YPOS+2);
+        System.arraycopy(landscape[1], 0, landscape[MAX_XPOS+1], 0, MAX_YPOS+2);
+
+        if (topology == Topology.TORUS) {
+            for (int x = 0; x < MAX_XPOS+2; ++x) {
+                final byte[] column = landscape[x];
+                column[0] = column[MAX_YPOS];
+                column[MAX_YPOS+1] = column[1];
+            }
+        } else {
+            // Crossing the top or bottom edge of a Klein bottle mirrors x.
+            for (int x = 0; x < MAX_XPOS+2; ++x) {
+                final byte[] mirror = landscape[MAX_XPOS+1-x];
+                landscape[x][0] = mirror[MAX_YPOS];
+                landscape[x][MAX_YPOS+1] = mirror[1];
+            }
+        }
+    }
 
-        if (isLiving(l, u)) ++count;
-        if (isLiving(l, y)) ++count;
-        if (isLiving(l, d)) ++count;
+    private void allocateLandscape() {
+        if (landscape == null)
+            landscape = new byte[MAX_XPOS+2][MAX_YPOS+2];
+    }
 
-        if (isLiving(x, u)) ++count;
-        if (isLiving(x, d)) ++count;
+    public boolean isLiving(int x, int y) {
+        return (landscape != null) && ((landscape[x+1][y+1] & 0x01) == 1);
+    }
 
-        if (isLiving(r, u)) ++count;
-        if (isLiving(r, y)) ++count;
-        if (isLiving(r, d)) ++count;
+    public void toggle(int x, int y) {
+        allocateLandscape();
+        landscape[x+1][y+1] ^= 1;
+        ++edits;
+        statistics.toggled(x, y, isLiving(x, y));
+        if (heatmap != null && restoring == null)
+            heatmap.toggled(x, y, isLiving(x, y), generation);
+        if (snapshots != null)
+            snapshots.toggled(encode(x, y));
+    }
 
-        // Debug.info(DD, "livingNeighboursSafe() -> " + count);
-        return count;
+    public void toggle(int pos) {
+        final int x = extractX(pos);
+        final int y = extractY(pos);
+        toggle(x, y);
     }
 
-    public void nextGenSafeX(int x, LinkedList<Integer> toggles) {
-        final int l = (x == 0) ? (MAX_XPOS-1) : x-1;
-        final int r = (x == MAX_XPOS-1) ? 0 : x+1;
-        
-        for (int y = 0; y < MAX_YPOS; ++y) {
-            final int u = (y == 0) ? (MAX_YPOS-1) : y-1;
-            final int d = (y == MAX_YPOS-1) ? 0 : y+1;
+    public boolean toggleSelected(int x, int y) {
+        // Debug.info(DD, "toggleSelected() " + x + " " + y);
 
-            final int count = livingNeighbours(l, x, r, u, y, d);
-            final boolean living = isLiving(x, y);
+        toggle(x, y);
+        Collection<Integer> edit = Collections.singletonList(encode(x, y));
+        history.record(edit, false, generation);
+        recordEdit(edit);
+        publishSnapshot();
 
-            if (living) {
-                if (isLiveCheck(count) != true) {
-                    toggles.add(encode(x, y));
-                }
-            } else {
-                if (isBirthCheck(count) == true) {
+        return isLiving(x, y);
+    }
+
+    public int getCellCount() { return MAX_XPOS * MAX_YPOS; }
+
+    // Copy of the landscape taken by clearLandscape() while the heatmap is
+    // counting, until the restore is finished by restoredLandscape().
+    private byte[][] restoring = null;
+
+    /**
+     * Kill all cells without recording the change, before restoring a saved
+     * landscape by toggling its living cells. While the heatmap is counting,
+     * restoredLandscape() must be called once the cells are restored.
+     */
+    void clearLandscape() {
+        if (heatmap != null && restoring == null) {
+            allocateLandscape();
+            restoring = new byte[MAX_XPOS+2][];
+            for (int x = 0; x < MAX_XPOS+2; ++x)
+                restoring[x] = landscape[x].clone();
+        }
+        if (landscape != null)
+            for (int x = 0; x < MAX_XPOS+2; ++x)
+                Arrays.fill(landscape[x], (byte)0);
+        ++edits;
+        if (snapshots != null)
+            snapshots.invalidate();
+        statistics.clear();
+    }
+
+    /**
+     * Finish restoring a landscape after clearLandscape(), counting only the
+     * cells whose state differs from before the clear in the heatmap, so
+     * that the restore does not add to the activity or age of the others.
+     */
+    void restoredLandscape() {
+        if (restoring == null)
+            return;
+
+        if (heatmap != null)
+            for (int x = 0; x < MAX_XPOS; ++x)
+                for (int y = 0; y < MAX_YPOS; ++y)
+                    if (((restoring[x+1][y+1] ^ landscape[x+1][y+1]) & 0x01) != 0)
+                        heatmap.toggled(x, y, isLiving(x, y), generation);
+        restoring = null;
+    }
+
+    /**
+     * @return the packed positions of all the living cells.
+     */
+    int[] getLivingCells() {
+        int count = 0;
+        for (int x = 0; x < MAX_XPOS; ++x)
+            for (int y = 0; y < MAX_YPOS; ++y)
+                if (isLiving(x, y))
+                    ++count;
+
+        int[] cells = new int[count];
+        int i = 0;
+        for (int x = 0; x < MAX_XPOS; ++x)
+            for (int y = 0; y < MAX_YPOS; ++y)
+                if (isLiving(x, y))
+                    cells[i++] = encode(x, y);
+
+        return cells;
+    }
+
+    /**
+     * Check if the bounding box of the living cells, plus a margin, is clear
+     * of the edges so that it can be evaluated without wrapping.
+     * @param margin the radius of the neighbourhood.
+     * @return true if only the region needs to be evaluated.
+     */
+    private boolean isInteriorRegion(int margin) {
+        return (statistics.getMinX() >= 2*margin) && (statistics.getMaxX() <= MAX_XPOS-1-2*margin) &&
+            (statistics.getMinY() >= 2*margin) && (statistics.getMaxY() <= MAX_YPOS-1-2*margin);
+    }
+
+    /**
+     * Apply the rules to a rectangular region and add all cells that should
+     * change state to the toggles list. The halo must be up to date if the
+     * region touches the edges.
+     * @param left most column of the region.
+     * @param right most column of the region.
+     * @param top most row of the region.
+     * @param bottom most row of the region.
+     * @param toggles list of cells that should change state.
+     */
+    private void nextGenRegion(int left, int right, int top, int bottom, LinkedList<Integer> toggles) {
+        final byte[] table = ruleTable;
+
+        for (int x = left; x <= right; ++x) {
+            // Cell (x, y) is held at landscape[x+1][y+1].
+            final byte[] l = landscape[x];
+            final byte[] c = landscape[x+1];
+            final byte[] r = landscape[x+2];
+
+            // The index holds the 3 x 3 neighbourhood in row order, so
+            // moving down a row shifts out the top row and adds a new one.
+            int index = (l[top] | c[top] << 1 | r[top] << 2) << 3 |
+                (l[top+1] | c[top+1] << 1 | r[top+1] << 2) << 6;
+            for (int y = top; y <= bottom; ++y) {
+                index = index >> 3 | (l[y+2] | c[y+2] << 1 | r[y+2] << 2) << 6;
+                if (table[index] != c[y+1])
                     toggles.add(encode(x, y));
-                }
             }
         }
     }
 
-    public void nextGenSafeY(int y, LinkedList<Integer> toggles) {
-        final int u = (y == 0) ? (MAX_YPOS-1) : y-1;
-        final int d = (y == MAX_YPOS-1) ? 0 : y+1;
+    /**
+     * Apply the rules to a rectangular region using the hash-consed tiles,
+     * reloading them if the landscape has changed since they were last used.
+     * @param left most column of the region.
+     * @param right most column of the region.
+     * @param top most row of the region.
+     * @param bottom most row of the region.
+     * @param toggles list of cells that should change state.
+     */
+    private void nextGenTiles(int left, int right, int top, int bottom, LinkedList<Integer> toggles) {
+        if (tiles == null) {
+            tiles = new Tiles(ruleTable, topology, MAX_XPOS, MAX_YPOS);
+            tiles.load(this);
+        } else if (tiledEdits != edits) {
+            tiles.load(this);
+        }
+
+        tiles.step(left, right, top, bottom, toggles);
 
-        for (int x = 1; x < (MAX_XPOS-1); ++x) {
-            final int l = x-1;
-            final int r = x+1;
+        // The toggles are about to be applied, after which the tiles match.
+        tiledEdits = edits + toggles.size();
+    }
 
-            final int count = livingNeighbours(l, x, r, u, y, d);
-            final boolean living = isLiving(x, y);
+    private static int getMask(ArrayList<Boolean> checks) {
+        int mask = 0;
+        for (int i = 0; i <= 8; ++i)
+            if (checks.get(i))
+                mask |= 1 << i;
 
-            if (living) {
-                if (isLiveCheck(count) != true) {
-                    toggles.add(encode(x, y));
-                }
-            } else {
-                if (isBirthCheck(count) == true) {
-                    toggles.add(encode(x, y));
+        return mask;
+    }
+
+    public LinkedList<Integer> nextGeneration() {
+        Debug.info(DD, "nextGeneration() ");
+        LinkedList<Integer> toggles;
+        if (isPlayback())
+            toggles = nextPlaybackGeneration();
+        else if (isDistributed())
+            toggles = nextDistributedGeneration();
+        else if (isViewer())
+            toggles = nextViewerGeneration();
+        else
+            toggles = nextLocalGeneration();
+
+        publishSnapshot();
+
+        return toggles;
+    }
+
+    /**
+     * Simulate the next generation here, rather than receiving it from
+     * elsewhere.
+     * @return the list of toggled cells.
+     */
+    private LinkedList<Integer> nextLocalGeneration() {
+        LinkedList<Integer> toggles = new LinkedList<>();
+
+        // Apply rules and create a list of all cells that should change state.
+        final int margin = (largerThanLife == null) ? 1 : largerThanLife.getRadius();
+        if (statistics.isEmpty()) {
+            // Nothing can be born without a living neighbour.
+        } else if (isInteriorRegion(margin) || topology == Topology.BOUNDED) {
+            // Nothing beyond the box plus a margin can change, and with dead
+            // edges that margin never needs to wrap.
+            final int left = Math.max(statistics.getMinX()-margin, 0);
+            final int right = Math.min(statistics.getMaxX()+margin, MAX_XPOS-1);
+            final int top = Math.max(statistics.getMinY()-margin, 0);
+            final int bottom = Math.min(statistics.getMaxY()+margin, MAX_YPOS-1);
+            if (largerThanLife != null)
+                largerThanLife.nextGenRegion(this, left, right, top, bottom, toggles);
+            else if (isHashTiles())
+                nextGenTiles(left, right, top, bottom, toggles);
+            else
+                nextGenQuiet(left, right, top, bottom, toggles);
+        } else if (largerThanLife != null) {
+            largerThanLife.nextGenRegion(this, 0, MAX_XPOS-1, 0, MAX_YPOS-1, toggles);
+        } else if (isHashTiles()) {
+            nextGenTiles(0, MAX_XPOS-1, 0, MAX_YPOS-1, toggles);
+        } else {
+            refreshHalo();
+            nextGenQuiet(0, MAX_XPOS-1, 0, MAX_YPOS-1, toggles);
+        }
+
+        // Now change the state of all cells that should change state.
+        final int population = statistics.getPopulation();
+        for (Integer pos : toggles) {
+            toggle(pos);
+        }
+        updateGenerationStatistics(toggles.size(), population);
+
+        ++generation;
+        history.record(toggles, true, generation);
+        recordStep(toggles);
+
+        return toggles;
+    }
+
+
+
+    /**
+     * Initialize "Earth" canvas.
+     */
+    private void initializeEarthCanvas() {
+        statistics = new Statistics(MAX_XPOS, MAX_YPOS);
+        recogniser = new Recogniser(this);
+        history = new History(this);
+        history.clear(generation);
+    }
+
+
+
+    /************************************************************************
+     * Support code for bulk edits.
+     */
+
+    // Number of columns edited by each parallel task.
+    private static final int EDIT_CHUNK = 16;
+
+    /**
+     * Gives the new states of a column of cells in a bulk edit.
+     */
+    @FunctionalInterface
+    private interface ColumnEdit {
+        /**
+         * @param random generator for the task editing the column.
+         * @param i column relative to the region.
+         * @param states the current states of the cells in the column of
+         *               the region, 0 or 1, to be replaced by the new ones.
+         */
+        void edit(SplittableRandom random, int i, byte[] states);
+    }
+
+    /**
+     * View packed positions as a list without boxing them all up front.
+     */
+    private static List<Integer> asList(int[] cells, int length) {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) { return cells[index]; }
+
+            @Override
+            public int size() { return length; }
+        };
+    }
+
+    /**
+     * Apply an edit to every column of a region in a single pass, then
+     * record the cells that changed as a single edit. The columns are split into
+     * chunks that are edited in parallel, each with its own random number
+     * generator split from the seed, so the result does not depend on the
+     * number of threads.
+     * @param left most column of the region, which wraps around the edges.
+     * @param top most row of the region.
+     * @param width of the region in cells.
+     * @param height of the region in cells.
+     * @param seed for the random number generators.
+     * @param edit giving the new states of each column.
+     * @return the number of cells changed.
+     */
+    private int bulkEdit(int left, int top, int width, int height, long seed, ColumnEdit edit) {
+        if (!isEditable())
+            return 0;
+
+        final int w = Math.min(width, MAX_XPOS);
+        final int h = Math.min(height, MAX_YPOS);
+        if (w <= 0 || h <= 0)
+            return 0;
+
+        // The region may wrap past the bottom edge into the top rows.
+        final int y0 = Math.floorMod(top, MAX_YPOS);
+        final int first = Math.min(h, MAX_YPOS - y0);
+
+        allocateLandscape();
+        final int chunks = (w + EDIT_CHUNK - 1) / EDIT_CHUNK;
+        final SplittableRandom root = new SplittableRandom(seed);
+        final SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int chunk = 0; chunk < chunks; ++chunk)
+            randoms[chunk] = root.split();
+
+        // Each task only writes to its own columns.
+        final int[][] changes = new int[chunks][];
+        final int[] counts = new int[chunks];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            final SplittableRandom random = randoms[chunk];
+            final int end = Math.min(w, (chunk + 1) * EDIT_CHUNK);
+            final byte[] states = new byte[h];
+            final byte[] previous = new byte[h];
+            int[] cells = new int[(end - chunk * EDIT_CHUNK) * h];
+            int count = 0;
+            for (int i = chunk * EDIT_CHUNK; i < end; ++i) {
+                final int x = Math.floorMod(left + i, MAX_XPOS);
+                final byte[] column = landscape[x+1];
+                System.arraycopy(column, y0+1, previous, 0, first);
+                System.arraycopy(column, 1, previous, first, h - first);
+                System.arraycopy(previous, 0, states, 0, h);
+
+                edit.edit(random, i, states);
+
+                for (int j = 0; j < h; ++j) {
+                    if (states[j] != previous[j]) {
+                        final int y = (j < first) ? y0 + j : j - first;
+                        column[y+1] = states[j];
+                        cells[count++] = encode(x, y);
+                    }
                 }
             }
+            changes[chunk] = cells;
+            counts[chunk] = count;
+        });
+
+        int total = 0;
+        for (int count : counts)
+            total += count;
+
+        int[] toggles = new int[total];
+        int n = 0;
+        for (int chunk = 0; chunk < chunks; ++chunk) {
+            System.arraycopy(changes[chunk], 0, toggles, n, counts[chunk]);
+            n += counts[chunk];
+        }
+
+        for (int pos : toggles) {
+            final int x = extractX(pos);
+            final int y = extractY(pos);
+            statistics.toggled(x, y, isLiving(x, y));
+            if (heatmap != null)
+                heatmap.toggled(x, y, isLiving(x, y), generation);
+            if (snapshots != null)
+                snapshots.toggled(pos);
         }
+        edits += total;
+
+        final List<Integer> edited = asList(toggles, total);
+        history.record(edited, false, generation);
+        recordEdit(edited);
+        publishSnapshot();
+        Debug.trace(DD, "bulkEdit() %d", total);
+
+        return total;
     }
 
+    /**
+     * Replace a region with a random soup.
+     * @param left most column of the region, which wraps around the edges.
+     * @param top most row of the region.
+     * @param width of the region in cells.
+     * @param height of the region in cells.
+     * @param density probability of each cell being alive.
+     * @param seed for the soup, the same seed always gives the same soup.
+     * @return the number of cells changed.
+     */
+    public int fillRegion(int left, int top, int width, int height, double density, long seed) {
+        // Compare the top 53 bits of a random long, as nextDouble() does.
+        final long threshold = (long)(density * (1L << 53));
+
+        return bulkEdit(left, top, width, height, seed, (random, i, states) -> {
+            for (int j = 0; j < states.length; ++j)
+                states[j] = (byte)(((random.nextLong() >>> 11) < threshold) ? 1 : 0);
+        });
+    }
 
-    public boolean isLiving(int x, int y) {
-        return ((landscape[x][y] & 0x01) == 1);
+    /**
+     * Kill every cell in a region.
+     * @return the number of cells changed.
+     */
+    public int clearRegion(int left, int top, int width, int height) {
+        return bulkEdit(left, top, width, height, 0, (random, i, states) -> Arrays.fill(states, (byte)0));
     }
 
-    private int livingNeighbours(int x, int y) {
-        int count = 0;
+    /**
+     * Toggle every cell in a region.
+     * @return the number of cells changed.
+     */
+    public int invertRegion(int left, int top, int width, int height) {
+        return bulkEdit(left, top, width, height, 0, (random, i, states) -> {
+            for (int j = 0; j < states.length; ++j)
+                states[j] ^= 1;
+        });
+    }
+
+    /**
+     * Bring a pattern to life at a given position after applying one of the
+     * eight rotations and reflections. Cells already alive are left alone.
+     * @param cells packed positions of the living cells of the pattern,
+     *              relative to its top left corner.
+     * @param width of the pattern.
+     * @param height of the pattern.
+     * @param left most column for the transformed pattern.
+     * @param top most row for the transformed pattern.
+     * @param transform 0 to 7, bit 0 mirrors x, bit 1 mirrors y and bit 2
+     *                  swaps x and y, as in Recogniser.encode().
+     * @return the number of cells changed.
+     */
+    public int stamp(int[] cells, int width, int height, int left, int top, int transform) {
+        final boolean swap = (transform & 4) != 0;
+        final int w = swap ? height : width;
+        final int h = swap ? width : height;
+
+        final byte[] pattern = new byte[w * h];
+        for (int pos : cells) {
+            int x = extractX(pos);
+            int y = extractY(pos);
+            if ((transform & 1) != 0)
+                x = width - 1 - x;
+            if ((transform & 2) != 0)
+                y = height - 1 - y;
+            if (swap) {
+                final int t = x;
+                x = y;
+                y = t;
+            }
+            pattern[x * h + y] = 1;
+        }
 
-        final int u = y-1;
-        final int d = y+1;
-        final int l = x-1;
-        final int r = x+1;
-        if (isLiving(l, u)) ++count;
-        if (isLiving(l, y)) ++count;
-        if (isLiving(l, d)) ++count;
+        // The region is clipped to the landscape, so the columns may be
+        // shorter than the pattern.
+        return bulkEdit(left, top, w, h, 0, (random, i, states) -> {
+            for (int j = 0; j < states.length; ++j)
+                states[j] |= pattern[i * h + j];
+        });
+    }
 
-        if (isLiving(x, u)) ++count;
-        if (isLiving(x, d)) ++count;
 
-        if (isLiving(r, u)) ++count;
-        if (isLiving(r, y)) ++count;
-        if (isLiving(r, d)) ++count;
 
-        return count;
+    /************************************************************************
+     * Support code for History.
+     */
+
+    private long generation = 0;
+    private History history;
+
+    public long getGeneration() { return generation; }
+
+    public boolean canStepBack() {
+        if (isDistributed() || isViewer())
+            return false;
+        if (isPlayback())
+            return generation > player.getFirstGeneration();
+
+        return history.canStepBack();
     }
+    public boolean canStepForward() { return history.canStepForward(); }
 
-    public void toggle(int x, int y) {
-        landscape[x][y] ^= 1;
+    public long getFirstGeneration() {
+        if (isPlayback())
+            return player.getFirstGeneration();
+
+        return history.getFirstGeneration();
     }
 
-    public void toggle(int pos) {
-        final int x = extractX(pos);
-        final int y = extractY(pos);
-        toggle(x, y);
+    public long getLastGeneration() {
+        if (isPlayback())
+            return player.getLastGeneration();
+
+        return history.getLastGeneration();
     }
 
-    public boolean toggleSelected(int x, int y) {
-        // Debug.info(DD, "toggleSelected() " + x + " " + y);
+    /**
+     * Undo the most recent generation or edit.
+     * @return the list of toggled cells or null if there is nothing to undo.
+     */
+    public LinkedList<Integer> stepBack() {
+        LinkedList<Integer> toggles = history.stepBack();
+        generation = history.getGeneration();
+        if (toggles != null)
+            recordEdit(toggles);
+        publishSnapshot();
 
-        toggle(x, y);
+        return toggles;
+    }
 
-        return isLiving(x, y);
+    /**
+     * Redo the most recently undone generation or edit.
+     * @return the list of toggled cells or null if there is nothing to redo.
+     */
+    public LinkedList<Integer> stepForward() {
+        LinkedList<Integer> toggles = history.stepForward();
+        generation = history.getGeneration();
+        if (toggles != null)
+            recordEdit(toggles);
+        publishSnapshot();
+
+        return toggles;
     }
 
-    public LinkedList<Integer> nextGeneration() {
-        Debug.info(DD, "nextGeneration() ");
-        LinkedList<Integer> toggles = new LinkedList<>();
+    /**
+     * @return true if the timeline can be scrubbed. A recording only ever
+     *         moves forward a generation at a time, so the history cannot
+     *         be scrubbed while recording.
+     */
+    public boolean canSeek() {
+        if (isDistributed() || isViewer())
+            return false;
 
-        // Apply rules and create a list of all cells that should change state.
-        for (int x = 1; x < (MAX_XPOS-1); ++x) {
-            for (int y = 1; y < (MAX_YPOS-1); ++y) {
-                final int count = livingNeighbours(x, y);
-                final boolean living = isLiving(x, y);
-
-                if (living) {
-                    if (isLiveCheck(count) != true) {
-                        toggles.add(encode(x, y));
-                    }
-                } else {
-                    if (isBirthCheck(count) == true) {
-                        toggles.add(encode(x, y));
-                    }
-                }
+        return isPlayback() || !isRecording();
+    }
+
+    /**
+     * Scrub the timeline to the given generation, including any edits made
+     * at that generation. The caller should redraw the whole canvas.
+     * @param target generation, clamped to the range held in the history.
+     */
+    public void seekGeneration(long target) {
+        if (!canSeek())
+            return;
+
+        if (isPlayback()) {
+            try {
+                player.seek(target);
+                generation = player.getGeneration();
+            } catch (IOException e) {
+                Debug.critical(DD, e.getMessage());
+                stopPlayback();
             }
+        } else {
+            history.seekGeneration(target);
+            generation = history.getGeneration();
         }
-    
-        nextGenSafeX(0, toggles);
-        nextGenSafeY(0, toggles);
-        nextGenSafeX(MAX_XPOS-1, toggles);
-        nextGenSafeY(MAX_YPOS-1, toggles);
+        publishSnapshot();
+    }
 
-        // Now change the state of all cells that should change state.
+    /**
+     * @return true if generations are simulated here, locally or by
+     *         workers that have all connected, so the landscape can be
+     *         advanced to a generation.
+     */
+    public boolean canAdvance() {
+        if (isDistributed() && !coordinator.isStarted())
+            return false;
+
+        return !isPlayback() && !isViewer();
+    }
+
+    /**
+     * Start simulating generations on a separate thread until the target
+     * generation is reached. Nothing else may use the Model until the
+     * returned task is done.
+     * @param target generation to stop at.
+     * @return the running task, which reports progress and can be cancelled.
+     * @throws IllegalStateException if the landscape cannot be advanced.
+     */
+    public Advance advanceTo(long target) {
+        if (!canAdvance())
+            throw new IllegalStateException("Generations are not simulated here");
+
+        Advance advance = new Advance(this, target);
+        Thread thread = new Thread(advance, "Advance");
+        thread.setDaemon(true);
+        thread.start();
+
+        return advance;
+    }
+
+
+
+    /************************************************************************
+     * Support code for recording and playback.
+     */
+
+    private Recorder recorder = null;
+    private Player player = null;
+
+    public boolean isRecording() { return recorder != null; }
+    public boolean isPlayback() { return player != null; }
+
+    /**
+     * Start recording every generation and edit to the given file.
+     * @param file to record to, any existing file is overwritten.
+     */
+    public void startRecording(File file) throws IOException {
+        stopRecording();
+        stopPlayback();
+        recorder = new Recorder(file, MAX_XPOS, MAX_YPOS, generation, getLivingCells());
+    }
+
+    /**
+     * Finish the current recording, if any.
+     */
+    public void stopRecording() {
+        if (recorder == null)
+            return;
+
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+        }
+        recorder = null;
+    }
+
+    private void recordStep(Collection<Integer> toggles) {
+        if (recorder == null)
+            return;
+
+        try {
+            recorder.step(toggles, this);
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+            stopRecording();
+        }
+    }
+
+    private void recordEdit(Collection<Integer> toggles) {
+        if (recorder == null)
+            return;
+
+        try {
+            recorder.edit(toggles);
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+            stopRecording();
+        }
+    }
+
+    /**
+     * Replace the landscape with the start of a recording. Subsequent calls 
+     * to nextGeneration() play the recording back instead of simulating.
+     * @param file to play back.
+     */
+    public void startPlayback(File file) throws IOException {
+        stopRecording();
+        stopPlayback();
+        stopDistributed();
+        stopViewer();
+        player = new Player(file, this);
+        generation = player.getGeneration();
+        history.clear(generation);
+    }
+
+    /**
+     * Stop playing back, leaving the landscape at the current generation
+     * so that it can be simulated from there.
+     */
+    public void stopPlayback() {
+        if (player == null)
+            return;
+
+        try {
+            player.close();
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+        }
+        player = null;
+        history.clear(generation);
+    }
+
+    private LinkedList<Integer> nextPlaybackGeneration() {
+        LinkedList<Integer> toggles = null;
+        final int population = statistics.getPopulation();
+        try {
+            toggles = player.next();
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+            stopPlayback();
+        }
+
+        if (toggles == null)
+            return new LinkedList<>();
+
+        updateGenerationStatistics(toggles.size(), population);
+        generation = player.getGeneration();
+
+        return toggles;
+    }
+
+
+
+
+
+    /************************************************************************
+     * Support code for distributed simulation.
+     */
+
+    private Coordinator coordinator = null;
+
+    public boolean isDistributed() { return coordinator != null; }
+
+    /**
+     * Check if the landscape can be edited with the mouse.
+     * @return false if the generations come from elsewhere.
+     */
+    public boolean isEditable() { return !isPlayback() && !isDistributed() && !isViewer(); }
+
+    /**
+     * Hand the landscape to worker JVMs, which are started on a separate
+     * thread. The landscape cannot be edited from now on, and subsequent
+     * calls to nextGeneration() return the generations merged from the
+     * workers once they have all connected. If they cannot be started
+     * distributed simulation is stopped again.
+     * @param workers number of worker JVMs to start.
+     * @param done called on the FX Application Thread once the workers have
+     *             connected or have failed to start.
+     */
+    public void startDistributed(int workers, Runnable done) throws IOException {
+        if (topology != Topology.TORUS)
+            throw new IOException("Distributed simulation requires the torus topology");
+        if (!isCheckBoxRule())
+            throw new IOException("Distributed simulation only supports the check box rules");
+
+        stopPlayback();
+        stopDistributed();
+        stopViewer();
+        final Coordinator starting = new Coordinator(this, workers);
+        coordinator = starting;
+        history.clear(generation);
+
+        Task<Void> task = new Task<Void>() {
+            @Override
+            protected Void call() throws IOException {
+                starting.start();
+                return null;
+            }
+        };
+        task.setOnSucceeded(e -> done.run());
+        // No advance can be running while the workers are starting, so the
+        // coordinator can safely be stopped here if they fail.
+        task.setOnFailed(e -> {
+            Debug.critical(DD, "startDistributed() " + task.getException().getMessage());
+            if (coordinator == starting)
+                stopDistributed();
+            done.run();
+        });
+
+        Thread thread = new Thread(task, "Coordinator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the workers, leaving the landscape at the last merged generation
+     * so that it can be simulated locally from there.
+     */
+    public void stopDistributed() {
+        if (coordinator == null)
+            return;
+
+        coordinator.close();
+        coordinator = null;
+        history.clear(generation);
+    }
+
+    private LinkedList<Integer> nextDistributedGeneration() {
+        LinkedList<Integer> toggles = null;
+        try {
+            toggles = coordinator.next();
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+            stopDistributed();
+        }
+
+        if (toggles == null)
+            return new LinkedList<>();
+
+        final int population = statistics.getPopulation();
         for (Integer pos : toggles) {
             toggle(pos);
         }
+        updateGenerationStatistics(toggles.size(), population);
+
+        ++generation;
+        recordStep(toggles);
 
         return toggles;
     }
 
 
+
+    /************************************************************************
+     * Support code for viewing a remote Server.
+     */
+
+    private Viewer viewer = null;
+
+    public boolean isViewer() { return viewer != null; }
+
     /**
-     * Initialize "Earth" canvas.
+     * Connect to a Server. Subsequent calls to nextGeneration() bring the
+     * landscape up to date with the server instead of simulating.
+     * @param uri of the server, for example ws://localhost:8080/.
      */
-    private void initializeEarthCanvas() {
-        landscape = new byte[MAX_XPOS][MAX_YPOS];
+    public void startViewer(URI uri) throws IOException {
+        stopPlayback();
+        stopDistributed();
+        stopViewer();
+        viewer = new Viewer(this, uri);
+        history.clear(generation);
+    }
+
+    /**
+     * Disconnect from the server, leaving the landscape at the last received
+     * generation so that it can be simulated locally from there.
+     */
+    public void stopViewer() {
+        if (viewer == null)
+            return;
+
+        viewer.close();
+        viewer = null;
+        history.clear(generation);
+    }
+
+    private LinkedList<Integer> nextViewerGeneration() {
+        LinkedList<Integer> toggles = null;
+        try {
+            toggles = viewer.next();
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+            stopViewer();
+        }
+
+        if (toggles == null)
+            return new LinkedList<>();
+
+        final int population = statistics.getPopulation();
+        for (Integer pos : toggles) {
+            toggle(pos);
+        }
+        updateGenerationStatistics(toggles.size(), population);
+
+        generation = viewer.getGeneration();
+        recordStep(toggles);
+
+        return toggles;
+    }
+
+
+    /************************************************************************
+     * Support code for the topology.
+     */
+
+    public enum Topology { TORUS, BOUNDED, KLEIN }
+
+    private Topology topology = Topology.TORUS;
+
+    public Topology getTopology() { return topology; }
+    public void initTopology() { setTopology(Topology.TORUS); }
+
+    /**
+     * Change the way the edges of the landscape are joined. Dead edges need
+     * an empty halo, the other topologies refill it every generation.
+     */
+    public void setTopology(Topology value) {
+        topology = value;
+        tiles = null;
+        lastToggles = null;
+        if (topology != Topology.BOUNDED || landscape == null)
+            return;
+
+        Arrays.fill(landscape[0], (byte)0);
+        Arrays.fill(landscape[MAX_XPOS+1], (byte)0);
+        for (int x = 1; x <= MAX_XPOS; ++x) {
+            landscape[x][0] = 0;
+            landscape[x][MAX_YPOS+1] = 0;
+        }
+    }
+
+    /**
+     * Check if a cell is alive, where the cell may be beyond the edges of
+     * the landscape by less than its width or height, in which case the
+     * topology decides which cell is meant.
+     */
+    boolean isLivingBeyond(int x, int y) {
+        if (x >= 0 && x < MAX_XPOS && y >= 0 && y < MAX_YPOS)
+            return isLiving(x, y);
+        if (topology == Topology.BOUNDED)
+            return false;
+
+        if (y < 0 || y >= MAX_YPOS) {
+            // Crossing the top or bottom edge of a Klein bottle mirrors x.
+            if (topology == Topology.KLEIN)
+                x = MAX_XPOS-1-x;
+            y = Math.floorMod(y, MAX_YPOS);
+        }
+
+        return isLiving(Math.floorMod(x, MAX_XPOS), y);
+    }
+
+
+
+    /************************************************************************
+     * Support code for quiescent tiles.
+     */
+
+    // Width and height of the tiles checked for quiescence.
+    private static final int QUIET_SIZE = 32;
+    private static final int QUIET_COLUMNS = (MAX_XPOS + QUIET_SIZE - 1) / QUIET_SIZE;
+    private static final int QUIET_ROWS = (MAX_YPOS + QUIET_SIZE - 1) / QUIET_SIZE;
+
+    private static final int[] NO_TOGGLES = new int[0];
+
+    // The cells of each tile toggled by the last generation and by the one
+    // before it, in the order found, or null if not known.
+    private int[][] lastToggles = null;
+    private int[][] previousToggles = null;
+    private long quietEdits = 0;
+
+    private final boolean[] quiet = new boolean[QUIET_COLUMNS * QUIET_ROWS];
+
+    private long skippedTiles = 0;
+    private int lastSkipped = 0;
+
+    /**
+     * @return the number of tiles skipped by the last generation.
+     */
+    public int getSkippedTiles() { return lastSkipped; }
+
+    /**
+     * @return the number of tiles skipped by all generations so far.
+     */
+    public long getTotalSkippedTiles() { return skippedTiles; }
+
+    /**
+     * Check if a tile is quiet, where the tile may be beyond the edges of
+     * the landscape by one tile, in which case the topology decides which
+     * tile is meant.
+     */
+    private boolean isQuietBeyond(int tx, int ty) {
+        if (tx >= 0 && tx < QUIET_COLUMNS && ty >= 0 && ty < QUIET_ROWS)
+            return quiet[tx * QUIET_ROWS + ty];
+        if (topology == Topology.BOUNDED)
+            return true;
+
+        // Crossing the top or bottom edge of a Klein bottle mirrors x, which
+        // does not line up with the tiles.
+        if ((ty < 0 || ty >= QUIET_ROWS) && topology == Topology.KLEIN)
+            return false;
+
+        return quiet[Math.floorMod(tx, QUIET_COLUMNS) * QUIET_ROWS + Math.floorMod(ty, QUIET_ROWS)];
+    }
+
+    /**
+     * Apply the rules to a rectangular region, tile by tile. A tile that,
+     * along with its neighbours, is in the same state as two generations ago
+     * is quiescent: its next state is its state of the previous generation,
+     * so the cells it toggled last generation are toggled again without
+     * evaluating it. Any change to the landscape other than a generation
+     * evaluated here makes every tile unknown again.
+     * @param left most column of the region.
+     * @param right most column of the region.
+     * @param top most row of the region.
+     * @param bottom most row of the region.
+     * @param toggles list of cells that should change state.
+     */
+    private void nextGenQuiet(int left, int right, int top, int bottom, LinkedList<Integer> toggles) {
+        if (lastToggles == null || quietEdits != edits) {
+            lastToggles = new int[QUIET_COLUMNS * QUIET_ROWS][];
+            previousToggles = new int[QUIET_COLUMNS * QUIET_ROWS][];
+        }
+
+        // A tile is in the same state as two generations ago if it toggled
+        // the same cells in each of the last two generations.
+        for (int i = 0; i < quiet.length; ++i)
+            quiet[i] = lastToggles[i] != null && previousToggles[i] != null &&
+                Arrays.equals(lastToggles[i], previousToggles[i]);
+
+        // The oldest toggles are no longer needed, so their array is reused.
+        final int[][] next = previousToggles;
+        int skipped = 0;
+        for (int tx = 0; tx < QUIET_COLUMNS; ++tx) {
+            final int x0 = Math.max(tx * QUIET_SIZE, left);
+            final int x1 = Math.min(tx * QUIET_SIZE + QUIET_SIZE - 1, right);
+            for (int ty = 0; ty < QUIET_ROWS; ++ty) {
+                final int i = tx * QUIET_ROWS + ty;
+                final int y0 = Math.max(ty * QUIET_SIZE, top);
+                final int y1 = Math.min(ty * QUIET_SIZE + QUIET_SIZE - 1, bottom);
+                if (x0 > x1 || y0 > y1) {
+                    // Nothing outside the region can change.
+                    next[i] = NO_TOGGLES;
+                    continue;
+                }
+
+                boolean skip = true;
+                for (int dx = -1; dx <= 1 && skip; ++dx)
+                    for (int dy = -1; dy <= 1 && skip; ++dy)
+                        skip = isQuietBeyond(tx + dx, ty + dy);
+
+                if (skip) {
+                    ++skipped;
+                    next[i] = lastToggles[i];
+                    for (int pos : next[i])
+                        toggles.add(pos);
+                    continue;
+                }
+
+                final int size = toggles.size();
+                nextGenRegion(x0, x1, y0, y1, toggles);
+                final int count = toggles.size() - size;
+                if (count == 0) {
+                    next[i] = NO_TOGGLES;
+                    continue;
+                }
+
+                int[] cells = new int[count];
+                Iterator<Integer> iterator = toggles.descendingIterator();
+                for (int j = count - 1; j >= 0; --j)
+                    cells[j] = iterator.next();
+                next[i] = cells;
+            }
+        }
+
+        previousToggles = lastToggles;
+        lastToggles = next;
+
+        // The toggles are about to be applied, after which the tiles match.
+        quietEdits = edits + toggles.size();
+
+        lastSkipped = skipped;
+        skippedTiles += skipped;
+    }
+
+
+
+    /************************************************************************
+     * Support code for snapshots.
+     */
+
+    // Publishes completed generations to other threads, or null if no
+    // other thread reads the landscape.
+    private volatile Snapshots snapshots = null;
+
+    /**
+     * Start publishing a snapshot of every completed generation, and of
+     * every edit, for other threads to read. Must be called by the thread
+     * that steps the Model, before any other thread reads it.
+     */
+    public void startSnapshots() {
+        if (snapshots == null)
+            snapshots = new Snapshots(this);
+    }
+
+    /**
+     * Stop publishing snapshots. Any still held remain valid.
+     */
+    public void stopSnapshots() { snapshots = null; }
+
+    /**
+     * Get the most recently published generation, which any thread may do
+     * while another thread steps the Model, without locking or copying the
+     * landscape. The snapshot must be closed when it is no longer needed.
+     * @return the snapshot, or null if snapshots have not been started.
+     */
+    public Snapshot acquireSnapshot() {
+        final Snapshots current = snapshots;
+
+        return (current == null) ? null : current.acquire();
+    }
+
+    private void publishSnapshot() {
+        if (snapshots != null)
+            snapshots.publish();
+    }
+
+
+
+    /************************************************************************
+     * Support code for the heatmap.
+     */
+
+    // Counters of the changes to each cell, or null until they are needed.
+    private Heatmap heatmap = null;
+
+    /**
+     * Get the heatmap, starting to count changes to the cells if this is
+     * the first time it has been asked for.
+     * @return the heatmap of the landscape.
+     */
+    public Heatmap getHeatmap() {
+        if (heatmap == null)
+            heatmap = new Heatmap(MAX_XPOS, MAX_YPOS, generation);
+
+        return heatmap;
+    }
+
+
+
+    /************************************************************************
+     * Support code for hash tiles.
+     */
+
+    private boolean hashTiles = false;
+
+    // The landscape as hash-consed tiles, or null until they are needed.
+    private Tiles tiles = null;
+
+    // Count of cell changes, used to detect when the tiles are out of date.
+    private long edits = 0;
+    private long tiledEdits = 0;
+
+    /**
+     * @return true if generations are evaluated as hash-consed tiles, which
+     *         is only possible with rules of the 3 x 3 neighbourhood.
+     */
+    public boolean isHashTiles() { return hashTiles && largerThanLife == null && Tiles.isSupported(MAX_XPOS, MAX_YPOS); }
+
+    /**
+     * Select whether generations are evaluated as hash-consed tiles.
+     * Dropping the tiles releases the memoised successors.
+     */
+    public void setHashTiles(boolean state) {
+        hashTiles = state;
+        if (!state)
+            tiles = null;
+    }
+
+    /**
+     * @return a summary of the distinct tiles and the successors found in
+     *         the memo, or null if the tiles are not in use.
+     */
+    public String getTilesSummary() {
+        if (tiles == null)
+            return null;
+
+        return tiles.getDistinct() + " distinct tiles, " + tiles.getHits() + " memo hits, " + tiles.getMisses() + " misses";
+    }
+
+
+
+    /************************************************************************
+     * Support code for rules.
+     */
+
+    // The Larger than Life rule in use, or null for the check boxes.
+    private LargerThanLife largerThanLife = null;
+
+    // The isotropic non-totalistic rule in use, or null for the check boxes.
+    private Isotropic isotropic = null;
+
+    // The next state of a cell for each 3 x 3 neighbourhood, see Isotropic.
+    private byte[] ruleTable;
+
+    /**
+     * @return true if the rule is fully described by the check boxes.
+     */
+    public boolean isCheckBoxRule() { return largerThanLife == null && isotropic == null; }
+
+    private void buildRuleTable() {
+        tiles = null;
+        lastToggles = null;
+        if (isotropic != null)
+            ruleTable = isotropic.getTable();
+        else if (liveCheck != null && birthCheck != null)
+            ruleTable = new Isotropic(getMask(birthCheck), getMask(liveCheck)).getTable();
+    }
+
+    /**
+     * @return the rule in use, either in B/S notation, such as B3/S23, or
+     *         in Larger than Life notation.
+     */
+    public String getRuleString() {
+        if (largerThanLife != null)
+            return largerThanLife.toString();
+        if (isotropic != null)
+            return isotropic.toString();
+
+        return Torus.getRuleString((getMask(birthCheck) >> 1) | (getMask(liveCheck) >> 1) << 8);
+    }
+
+    /**
+     * Change the rule, either by setting the check boxes from B/S notation,
+     * by selecting an isotropic non-totalistic rule in Hensel notation or by
+     * selecting a Larger than Life rule. For a non-totalistic rule the check
+     * boxes show the counts with any arrangement selected.
+     * @param text of the rule.
+     * @throws IllegalArgumentException if the rule is invalid.
+     */
+    public void setRuleString(String text) {
+        if (LargerThanLife.isRule(text)) {
+            largerThanLife = LargerThanLife.parse(text);
+            return;
+        }
+
+        final Isotropic rule = Isotropic.parse(text);
+        for (int count = 1; count <= 8; ++count) {
+            setBirthCheck(count, rule.isBirth(count));
+            setLiveCheck(count, rule.isSurvive(count));
+        }
+
+        if (!rule.isTotalistic()) {
+            isotropic = rule;
+            buildRuleTable();
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for object recognition.
+     */
+
+    private Recogniser recogniser;
+
+    /**
+     * Identify the objects in the landscape.
+     * @return the number of each object found, by name.
+     */
+    public TreeMap<String, Integer> recogniseObjects() { return recogniser.recognise(); }
+
+    /**
+     * @return the objects found by the most recent recogniseObjects().
+     */
+    public TreeMap<String, Integer> getObjects() { return recogniser.getObjects(); }
+
+
+
+    /************************************************************************
+     * Support code for Statistics.
+     */
+
+    private Statistics statistics;
+
+    public int getPopulation() { return statistics.getPopulation(); }
+    public int getBirths() { return statistics.getBirths(); }
+    public int getDeaths() { return statistics.getDeaths(); }
+
+    public int getColumnPopulation(int x) { return statistics.getColumnPopulation(x); }
+    public int getRowPopulation(int y) { return statistics.getRowPopulation(y); }
+
+    /**
+     * The bounding box of the living cells. If there are no living cells the 
+     * minimum is greater than the maximum.
+     */
+    public int getMinX() { return statistics.getMinX(); }
+    public int getMaxX() { return statistics.getMaxX(); }
+    public int getMinY() { return statistics.getMinY(); }
+    public int getMaxY() { return statistics.getMaxY(); }
+
+    /**
+     * Derive the births and deaths of a generation from the number of cells 
+     * toggled and the change in population, as births + deaths = toggled and
+     * births - deaths = change.
+     * @param toggled number of cells.
+     * @param population before the cells were toggled.
+     */
+    private void updateGenerationStatistics(int toggled, int population) {
+        final int change = statistics.getPopulation() - population;
+        final int births = (toggled + change) / 2;
+        statistics.setGeneration(births, toggled - births);
     }
 
 
@@ -0,0 +1,295 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Player is the class that plays back a run written by Recorder. The file is
+ * read through a memory-mapped window that is moved as playback advances.
+ * Seeking restores the nearest snapshot at or before the target generation
+ * using the index and then applies the deltas up to the target. If the
+ * recording was not closed cleanly the index is rebuilt by scanning.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import phillockett65.Debug.Debug;
+
+public class Player {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    private static final long WINDOW_SIZE = 1L << 26;
+
+    private final Model model;
+    private final FileChannel channel;
+    private final long size;
+    private long end;
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long position = 0;
+
+    private long firstGeneration;
+    private long lastGeneration;
+    private long generation;
+
+    private final ArrayList<Long> indexGenerations = new ArrayList<Long>();
+    private final ArrayList<Long> indexOffsets = new ArrayList<Long>();
+
+
+
+    /************************************************************************
+     * General support code.
+     */
+
+    /**
+     * Map the window of the file that starts at the given offset.
+     */
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        final long length = Math.min(WINDOW_SIZE, size - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private byte getByte() throws IOException {
+        if (position >= size)
+            throw new IOException("Unexpected end of recording");
+
+        if (position - windowStart >= window.limit() || position < windowStart)
+            map(position);
+
+        return window.get((int)(position++ - windowStart));
+    }
+
+    private int getInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; ++i)
+            value = (value << 8) | (getByte() & 0xFF);
+
+        return value;
+    }
+
+    private long getLong() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; ++i)
+            value = (value << 8) | (getByte() & 0xFF);
+
+        return value;
+    }
+
+    private int getVarint() throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = getByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    /**
+     * Read the positions of the record at the current position and either
+     * toggle them or skip them.
+     * @param apply the positions to the landscape if true.
+     * @param toggles list to add the toggled cells to, or null.
+     */
+    private void readPositions(boolean apply, LinkedList<Integer> toggles) throws IOException {
+        final int count = getVarint();
+        int pos = 0;
+        for (int i = 0; i < count; ++i) {
+            pos += getVarint();
+            if (apply) {
+                model.toggle(pos);
+                if (toggles != null)
+                    toggles.add(pos);
+            }
+        }
+    }
+
+    /**
+     * Replace the landscape with the snapshot at the given index entry.
+     */
+    private void restore(int index) throws IOException {
+        model.clearLandscape();
+        try {
+            position = indexOffsets.get(index);
+            getByte();
+            readPositions(true, null);
+        } finally {
+            model.restoredLandscape();
+        }
+        generation = indexGenerations.get(index);
+    }
+
+    /**
+     * Read the index from the end of the file if the recording was closed
+     * cleanly, otherwise rebuild it by scanning all the records.
+     */
+    private void readIndex() throws IOException {
+        if (size >= Recorder.HEADER_SIZE + Recorder.TRAILER_SIZE) {
+            position = size - Recorder.TRAILER_SIZE;
+            final long indexOffset = getLong();
+            final long last = getLong();
+            if (getInt() == Recorder.MAGIC) {
+                position = indexOffset;
+                final int count = getInt();
+                for (int i = 0; i < count; ++i) {
+                    indexGenerations.add(getLong());
+                    indexOffsets.add(getLong());
+                }
+                end = indexOffset;
+                lastGeneration = last;
+
+                return;
+            }
+        }
+
+        Debug.warning(DD, "Player recording not closed, rebuilding index");
+        position = Recorder.HEADER_SIZE;
+        end = position;
+        long gen = firstGeneration;
+        try {
+            while (position < size) {
+                final byte type = getByte();
+                readPositions(false, null);
+                if (type == Recorder.SNAPSHOT) {
+                    indexGenerations.add(gen);
+                    indexOffsets.add(end);
+                } else if (type == Recorder.STEP) {
+                    ++gen;
+                }
+                end = position;
+            }
+        } catch (IOException e) {
+            Debug.warning(DD, "Player ignoring incomplete record at " + end);
+        }
+        lastGeneration = gen;
+        if (indexGenerations.isEmpty())
+            throw new IOException("Recording has no snapshot");
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Player.
+     */
+
+    /**
+     * Open a recording for playback and restore the initial state.
+     * @param file to play back.
+     * @param model whose landscape the recording is applied to.
+     */
+    public Player(File file, Model model) throws IOException {
+        this.model = model;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        size = channel.size();
+        if (size < Recorder.HEADER_SIZE)
+            throw new IOException("Recording is too short: " + file);
+
+        map(0);
+        if (getInt() != Recorder.MAGIC || getInt() != Recorder.VERSION)
+            throw new IOException("Not a recording: " + file);
+
+        final int width = getInt();
+        final int height = getInt();
+        if (width != model.getWidth() || height != model.getHeight())
+            throw new IOException("Recording is " + width + "x" + height);
+
+        firstGeneration = getLong();
+        readIndex();
+        restore(0);
+        Debug.trace(DD, "Player() " + file + " " + firstGeneration + " to " + lastGeneration);
+    }
+
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public long getFirstGeneration() { return firstGeneration; }
+    public long getLastGeneration() { return lastGeneration; }
+    public long getGeneration() { return generation; }
+
+    /**
+     * Apply the records up to and including the next generation.
+     * @return the list of toggled cells or null at the end of the recording.
+     */
+    public LinkedList<Integer> next() throws IOException {
+        if (generation >= lastGeneration)
+            return null;
+
+        LinkedList<Integer> toggles = new LinkedList<>();
+        while (position < end) {
+            final byte type = getByte();
+            if (type == Recorder.SNAPSHOT) {
+                readPositions(false, null);
+                continue;
+            }
+
+            readPositions(true, toggles);
+            if (type == Recorder.STEP) {
+                ++generation;
+                break;
+            }
+        }
+
+        return toggles;
+    }
+
+    /**
+     * Move the landscape to the given generation. If the target is not just
+     * ahead of the current generation the nearest preceding snapshot is
+     * restored first. The caller should redraw the whole canvas.
+     * @param target generation, clamped to the recorded range.
+     */
+    public void seek(long target) throws IOException {
+        target = Math.max(firstGeneration, Math.min(lastGeneration, target));
+
+        int index = 0;
+        for (int i = 0; i < indexGenerations.size(); ++i) {
+            if (indexGenerations.get(i) > target)
+                break;
+            index = i;
+        }
+
+        if (target < generation || indexGenerations.get(index) > generation)
+            restore(index);
+
+        while (generation < target)
+            next();
+    }
+
+}
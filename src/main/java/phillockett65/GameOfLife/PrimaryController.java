@@ -24,21 +24,40 @@
  */
 package phillockett65.GameOfLife;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.CheckMenuItem;
+import javafx.scene.control.Label;
+import javafx.scene.control.MenuBar;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.Tooltip;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import phillockett65.Debug.Debug;
 
@@ -51,6 +70,13 @@ public class PrimaryController {
     private static final Color contrastColor = Color.rgb(220,220,255);
     private static final Color livingColor = Color.CRIMSON;
 
+    // Colours of the levels of the heatmap, from cool to hot.
+    private static final Color[] ramp = new Color[Heatmap.LEVELS];
+    static {
+        for (int level = 0; level < Heatmap.LEVELS; ++level)
+            ramp[level] = Color.hsb(240.0 * (Heatmap.LEVELS - 1 - level) / (Heatmap.LEVELS - 1), 0.85, 1.0);
+    }
+
     private Model model;
     private Group group;
     private Canvas canvas;
@@ -104,6 +130,7 @@ public class PrimaryController {
     public void init(Stage stage, Scene scene) {
         Debug.trace(DD, "PrimaryController init.");
         model.init(stage, scene, this);
+        scene.addPostLayoutPulseListener(this::redrawEarthCanvas);
         syncUI();
 
     }
@@ -124,7 +151,500 @@ public class PrimaryController {
         }
         updateLiveTooltips();
         updateBirthTooltips();
+        syncRuleTextField();
+        syncFileMenu();
+        syncBackButton();
+        syncEarthCanvas();
+    }
+
+
+
+    /************************************************************************
+     * Support code for "File" menu.
+     */
+
+    @FXML
+    private MenuBar menuBar;
+
+    @FXML
+    private CheckMenuItem recordMenuItem;
+
+    @FXML
+    private CheckMenuItem playbackMenuItem;
+
+    @FXML
+    private MenuItem seekMenuItem;
+
+    @FXML
+    private Label statusLabel;
+
+    public double getMenuBarHeight() { return menuBar.getHeight(); }
+
+    /**
+     * Display the generation, population, births, deaths and bounding box.
+     */
+    private void syncStatus() {
+        String status = "Rule " + model.getRuleString() +
+            "   Generation " + model.getGeneration() +
+            "   Population " + model.getPopulation() +
+            "   Births " + model.getBirths() +
+            "   Deaths " + model.getDeaths();
+        if (model.getPopulation() > 0) {
+            status += "   Box (" + model.getMinX() + ", " + model.getMinY() +
+                ") to (" + model.getMaxX() + ", " + model.getMaxY() + ")";
+        }
+        if (model.getSkippedTiles() > 0)
+            status += "   Quiet tiles " + model.getSkippedTiles();
+
+        statusLabel.setText(status);
+    }
+
+    private FileChooser getRecordingChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Recordings", "*.golr"));
+
+        return chooser;
+    }
+
+    @FXML
+    void recordMenuItemActionPerformed(ActionEvent event) {
+        Debug.trace(DD, "recordMenuItemActionPerformed() " + recordMenuItem.isSelected());
+
+        if (recordMenuItem.isSelected()) {
+            File file = getRecordingChooser("Record Run").showSaveDialog(model.getStage());
+            if (file != null) {
+                try {
+                    model.startRecording(file);
+                } catch (IOException e) {
+                    Debug.critical(DD, e.getMessage());
+                }
+            }
+        } else {
+            model.stopRecording();
+        }
+        syncFileMenu();
+    }
+
+    @FXML
+    void playbackMenuItemActionPerformed(ActionEvent event) {
+        Debug.trace(DD, "playbackMenuItemActionPerformed() " + playbackMenuItem.isSelected());
+
+        if (playbackMenuItem.isSelected()) {
+            File file = getRecordingChooser("Play Back Run").showOpenDialog(model.getStage());
+            if (file != null) {
+                try {
+                    model.startPlayback(file);
+                } catch (IOException e) {
+                    Debug.critical(DD, e.getMessage());
+                }
+            }
+        } else {
+            model.stopPlayback();
+        }
+        syncFileMenu();
+        syncBackButton();
+        syncEarthCanvas();
+    }
+
+    @FXML
+    void seekMenuItemActionPerformed(ActionEvent event) {
+        if (!model.canSeek())
+            return;
+
+        final long first = model.getFirstGeneration();
+        final long last = model.getLastGeneration();
+
+        TextInputDialog dialog = new TextInputDialog(String.valueOf(model.getGeneration()));
+        dialog.setTitle("Seek Generation");
+        dialog.setHeaderText("Enter a generation from " + first + " to " + last);
+        dialog.showAndWait().ifPresent(text -> {
+            try {
+                model.seekGeneration(Long.parseLong(text.trim()));
+            } catch (NumberFormatException e) {
+                Debug.warning(DD, "seekMenuItemActionPerformed() invalid " + text);
+            }
+        });
+
+        Debug.trace(DD, "seekMenuItemActionPerformed() " + model.getGeneration());
+        syncFileMenu();
+        syncBackButton();
+        syncEarthCanvas();
+    }
+
+    private FileChooser getMacrocellChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Macrocell patterns", "*.mc"));
+
+        return chooser;
+    }
+
+    @FXML
+    void importMacrocellMenuItemActionPerformed(ActionEvent event) {
+        if (!model.isEditable())
+            return;
+
+        File file = getMacrocellChooser("Import Macrocell").showOpenDialog(model.getStage());
+        if (file == null)
+            return;
+
+        final Macrocell pattern;
+        try {
+            pattern = Macrocell.read(file);
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+            return;
+        }
+
+        final long[] bounds = pattern.getBounds();
+        if (bounds == null) {
+            Debug.warning(DD, "importMacrocellMenuItemActionPerformed() empty pattern");
+            return;
+        }
+
+        // Offer the whole pattern, as far as it fits, at the top left of
+        // the view.
+        final long width = Math.min(bounds[2] - bounds[0] + 1, model.getWidth());
+        final long height = Math.min(bounds[3] - bounds[1] + 1, model.getHeight());
+        TextInputDialog dialog = new TextInputDialog(bounds[0] + ", " + bounds[1] + ", " + width + ", " + height +
+            ", " + model.getX(0) + ", " + model.getY(0));
+        dialog.setTitle("Import Macrocell");
+        dialog.setHeaderText("The pattern spans (" + bounds[0] + ", " + bounds[1] + ") to (" + bounds[2] + ", " + bounds[3] + ")\n" +
+            "Enter the region to load as left, top, width, height, then the column and row to load it at");
+        dialog.showAndWait().ifPresent(text -> {
+            try {
+                final String[] fields = text.split(",");
+                if (fields.length != 6)
+                    throw new NumberFormatException();
+
+                if (pattern.getRule() != null) {
+                    try {
+                        model.setRuleString(pattern.getRule());
+                    } catch (IllegalArgumentException e) {
+                        Debug.warning(DD, "importMacrocellMenuItemActionPerformed() " + e.getMessage());
+                    }
+                }
+
+                final int count = pattern.load(model,
+                    Long.parseLong(fields[0].trim()), Long.parseLong(fields[1].trim()),
+                    Integer.parseInt(fields[2].trim()), Integer.parseInt(fields[3].trim()),
+                    Integer.parseInt(fields[4].trim()), Integer.parseInt(fields[5].trim()));
+                Debug.trace(DD, "importMacrocellMenuItemActionPerformed() " + count);
+            } catch (NumberFormatException e) {
+                Debug.warning(DD, "importMacrocellMenuItemActionPerformed() invalid " + text);
+            }
+        });
+        syncUI();
+    }
+
+    @FXML
+    void exportMacrocellMenuItemActionPerformed(ActionEvent event) {
+        File file = getMacrocellChooser("Export Macrocell").showSaveDialog(model.getStage());
+        if (file == null)
+            return;
+
+        try {
+            final int nodes = Macrocell.write(model, file);
+            Debug.trace(DD, "exportMacrocellMenuItemActionPerformed() " + nodes);
+        } catch (IOException e) {
+            Debug.critical(DD, e.getMessage());
+        }
+    }
+
+    private void syncFileMenu() {
+        recordMenuItem.setSelected(model.isRecording());
+        playbackMenuItem.setSelected(model.isPlayback());
+        seekMenuItem.setDisable(!model.canSeek());
+        distributedMenuItem.setSelected(model.isDistributed());
+        connectMenuItem.setSelected(model.isViewer());
+        torusMenuItem.setSelected(model.getTopology() == Model.Topology.TORUS);
+        boundedMenuItem.setSelected(model.getTopology() == Model.Topology.BOUNDED);
+        kleinMenuItem.setSelected(model.getTopology() == Model.Topology.KLEIN);
+    }
+
+
+
+    /************************************************************************
+     * Support code for "Edit" menu.
+     */
+
+    /**
+     * @return the number of columns of cells visible on the canvas.
+     */
+    private int getViewColumns() {
+        return Math.min((int)model.getEarthWidth() / model.getSize() + 1, model.getWidth());
+    }
+
+    /**
+     * @return the number of rows of cells visible on the canvas.
+     */
+    private int getViewRows() {
+        return Math.min((int)model.getEarthHeight() / model.getSize() + 1, model.getHeight());
+    }
+
+    @FXML
+    void fillMenuItemActionPerformed(ActionEvent event) {
+        TextInputDialog dialog = new TextInputDialog("0.35");
+        dialog.setTitle("Random Fill");
+        dialog.setHeaderText("Enter the density of living cells, from 0 to 1");
+        dialog.showAndWait().ifPresent(text -> {
+            try {
+                final int count = model.fillRegion(model.getX(0), model.getY(0), getViewColumns(), getViewRows(),
+                    Double.parseDouble(text.trim()), System.nanoTime());
+                Debug.trace(DD, "fillMenuItemActionPerformed() " + count);
+            } catch (NumberFormatException e) {
+                Debug.warning(DD, "fillMenuItemActionPerformed() invalid " + text);
+            }
+        });
+        syncEarthCanvas();
+        syncBackButton();
+    }
+
+    @FXML
+    void clearMenuItemActionPerformed(ActionEvent event) {
+        final int count = model.clearRegion(model.getX(0), model.getY(0), getViewColumns(), getViewRows());
+        Debug.trace(DD, "clearMenuItemActionPerformed() " + count);
+        syncEarthCanvas();
+        syncBackButton();
+    }
+
+    @FXML
+    void invertMenuItemActionPerformed(ActionEvent event) {
+        final int count = model.invertRegion(model.getX(0), model.getY(0), getViewColumns(), getViewRows());
+        Debug.trace(DD, "invertMenuItemActionPerformed() " + count);
+        syncEarthCanvas();
+        syncBackButton();
+    }
+
+
+
+    /************************************************************************
+     * Support code for "View" menu.
+     */
+
+    @FXML
+    private RadioMenuItem normalMenuItem;
+
+    @FXML
+    private RadioMenuItem shadowMenuItem;
+
+    @FXML
+    private RadioMenuItem activityMenuItem;
+
+    @FXML
+    private RadioMenuItem ageMenuItem;
+
+    @FXML
+    void displayMenuItemActionPerformed(ActionEvent event) {
+        if (shadowMenuItem.isSelected())
+            setDisplay(Display.SHADOW);
+        else if (activityMenuItem.isSelected())
+            setDisplay(Display.ACTIVITY);
+        else if (ageMenuItem.isSelected())
+            setDisplay(Display.AGE);
+        else
+            setDisplay(Display.NORMAL);
+
+        Debug.trace(DD, "displayMenuItemActionPerformed() " + display);
+    }
+
+
+
+    /************************************************************************
+     * Support code for "Run" menu.
+     */
+
+    @FXML
+    private CheckMenuItem distributedMenuItem;
+
+    @FXML
+    void distributedMenuItemActionPerformed(ActionEvent event) {
+        Debug.trace(DD, "distributedMenuItemActionPerformed() " + distributedMenuItem.isSelected());
+
+        if (distributedMenuItem.isSelected()) {
+            final int cores = Runtime.getRuntime().availableProcessors();
+            TextInputDialog dialog = new TextInputDialog(String.valueOf(Math.min(4, cores)));
+            dialog.setTitle("Distributed");
+            dialog.setHeaderText("Enter the number of worker processes");
+            dialog.showAndWait().ifPresent(text -> {
+                try {
+                    model.startDistributed(Integer.parseInt(text.trim()), () -> {
+                        syncFileMenu();
+                        syncBackButton();
+                    });
+                } catch (NumberFormatException e) {
+                    Debug.warning(DD, "distributedMenuItemActionPerformed() invalid " + text);
+                } catch (IOException e) {
+                    Debug.critical(DD, e.getMessage());
+                }
+            });
+        } else {
+            model.stopDistributed();
+        }
+        syncFileMenu();
+        syncBackButton();
+    }
+
+    @FXML
+    private CheckMenuItem connectMenuItem;
+
+    @FXML
+    void connectMenuItemActionPerformed(ActionEvent event) {
+        Debug.trace(DD, "connectMenuItemActionPerformed() " + connectMenuItem.isSelected());
+
+        if (connectMenuItem.isSelected()) {
+            TextInputDialog dialog = new TextInputDialog("ws://localhost:8080/");
+            dialog.setTitle("Connect");
+            dialog.setHeaderText("Enter the address of the simulation server");
+            dialog.showAndWait().ifPresent(text -> {
+                try {
+                    model.startViewer(new URI(text.trim()));
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    Debug.warning(DD, "connectMenuItemActionPerformed() invalid " + text);
+                } catch (IOException e) {
+                    Debug.critical(DD, e.getMessage());
+                }
+            });
+        } else {
+            model.stopViewer();
+        }
+        syncFileMenu();
+        syncBackButton();
+    }
+
+    @FXML
+    private RadioMenuItem torusMenuItem;
+
+    @FXML
+    private RadioMenuItem boundedMenuItem;
+
+    @FXML
+    private RadioMenuItem kleinMenuItem;
+
+    @FXML
+    void topologyMenuItemActionPerformed(ActionEvent event) {
+        if (boundedMenuItem.isSelected())
+            model.setTopology(Model.Topology.BOUNDED);
+        else if (kleinMenuItem.isSelected())
+            model.setTopology(Model.Topology.KLEIN);
+        else
+            model.setTopology(Model.Topology.TORUS);
+
+        Debug.trace(DD, "topologyMenuItemActionPerformed() " + model.getTopology());
+    }
+
+    @FXML
+    private CheckMenuItem hashTilesMenuItem;
+
+    @FXML
+    void hashTilesMenuItemActionPerformed(ActionEvent event) {
+        Debug.trace(DD, "hashTilesMenuItemActionPerformed() " + model.getTilesSummary());
+        model.setHashTiles(hashTilesMenuItem.isSelected());
+    }
+
+    // The task advancing the landscape, or null if there is none.
+    private Advance advance = null;
+
+    @FXML
+    void advanceMenuItemActionPerformed(ActionEvent event) {
+        if (!model.canAdvance())
+            return;
+
+        if (model.isPlay()) {
+            playButtonActionPerformed(event);
+        }
+
+        TextInputDialog dialog = new TextInputDialog(String.valueOf(model.getGeneration() + 1000));
+        dialog.setTitle("Advance");
+        dialog.setHeaderText("Enter the generation to advance to");
+        dialog.showAndWait().ifPresent(text -> {
+            try {
+                final long target = Long.parseLong(text.trim());
+                if (target > model.getGeneration())
+                    startAdvance(target);
+            } catch (NumberFormatException e) {
+                Debug.warning(DD, "advanceMenuItemActionPerformed() invalid " + text);
+            }
+        });
+    }
+
+    /**
+     * Advance the landscape to a generation on a worker thread, showing the
+     * progress in a dialog that blocks the rest of the UI. Drawing is held
+     * back until the task is done, then the canvas is redrawn once.
+     * @param target generation to advance to.
+     */
+    private void startAdvance(long target) {
+        Debug.trace(DD, "startAdvance() " + target);
+        model.startSnapshots();
+        final Advance task = model.advanceTo(target);
+        advance = task;
+
+        ProgressBar bar = new ProgressBar();
+        bar.setPrefWidth(300);
+        bar.progressProperty().bind(task.progressProperty());
+        Label label = new Label();
+        label.textProperty().bind(task.messageProperty());
+
+        // The population is read from the latest completed generation while
+        // the worker thread continues stepping.
+        Label population = new Label();
+        task.messageProperty().addListener((observable, was, message) -> {
+            try (Snapshot snapshot = model.acquireSnapshot()) {
+                if (snapshot != null)
+                    population.setText("Population " + snapshot.getPopulation() + " at generation " + snapshot.getGeneration());
+            }
+        });
+
+        Alert alert = new Alert(Alert.AlertType.NONE, null, ButtonType.CANCEL);
+        alert.setTitle("Advance");
+        alert.setHeaderText("Advancing to generation " + target);
+        alert.getDialogPane().setContent(new VBox(10, bar, label, population));
+
+        // Closing the dialog cancels the task, which then ends the advance.
+        alert.setOnHidden(e -> task.cancel(false));
+        task.setOnSucceeded(e -> alert.close());
+        task.setOnFailed(e -> {
+            Debug.critical(DD, "startAdvance() " + task.getException());
+            alert.close();
+        });
+        task.runningProperty().addListener((observable, was, running) -> {
+            if (!running)
+                endAdvance();
+        });
+        alert.show();
+    }
+
+    private void endAdvance() {
+        Debug.trace(DD, "endAdvance() " + model.getGeneration());
+        advance = null;
+        model.stopSnapshots();
+
+        // Any redraw requested while advancing was held back.
+        redraw = false;
         syncEarthCanvas();
+        syncBackButton();
+    }
+
+    @FXML
+    void identifyMenuItemActionPerformed(ActionEvent event) {
+        final TreeMap<String, Integer> objects = model.recogniseObjects();
+        Debug.trace(DD, "identifyMenuItemActionPerformed() " + objects.size());
+
+        ArrayList<Map.Entry<String, Integer>> entries = new ArrayList<>(objects.entrySet());
+        entries.sort((a, b) -> b.getValue() - a.getValue());
+
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : entries)
+            text.append(entry.getValue()).append("  ").append(entry.getKey()).append('\n');
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Identify Objects");
+        alert.setHeaderText("Generation " + model.getGeneration() + ", " +
+            entries.stream().mapToInt(Map.Entry::getValue).sum() + " objects");
+        alert.setContentText(entries.isEmpty() ? "The landscape is empty." : text.toString());
+        alert.showAndWait();
     }
 
 
@@ -166,6 +686,7 @@ public class PrimaryController {
         Debug.trace(DD, "liveCheckboxActionPerformed() " + id);
         model.setLiveCheck(id, checkBox.isSelected());
         updateLiveTooltips();
+        syncRuleTextField();
     }
 
 
@@ -202,6 +723,27 @@ public class PrimaryController {
         Debug.trace(DD, "birthCheckboxActionPerformed() " + id);
         model.setBirthCheck(id, checkBox.isSelected());
         updateBirthTooltips();
+        syncRuleTextField();
+    }
+
+    @FXML
+    private TextField ruleTextField;
+
+    @FXML
+    void ruleTextFieldActionPerformed(ActionEvent event) {
+        try {
+            model.setRuleString(ruleTextField.getText());
+        } catch (IllegalArgumentException e) {
+            Debug.warning(DD, "ruleTextFieldActionPerformed() " + e.getMessage());
+        }
+
+        Debug.trace(DD, "ruleTextFieldActionPerformed() " + model.getRuleString());
+        syncUI();
+    }
+
+    private void syncRuleTextField() {
+        ruleTextField.setText(model.getRuleString());
+        ruleTextField.setTooltip(new Tooltip("Rule such as B3/S23, B2-a/S12 or R5,C0,M1,S34..58,B34..45,NM"));
     }
 
 
@@ -289,6 +831,9 @@ public class PrimaryController {
     @FXML
     private Button rightButton;
 
+    @FXML
+    private Button backButton;
+
     @FXML
     private Button shadowButton;
 
@@ -330,46 +875,52 @@ public class PrimaryController {
 
     @FXML
     void upButtonActionPerformed(ActionEvent event) {
-        model.moveUp();
+        panEarthCanvas(0, -1);
         Debug.trace(DD, "upButtonActionPerformed() " + model.getXOffset() + " " + model.getYOffset());
-        syncEarthCanvas();
     }
 
     @FXML
     void downButtonActionPerformed(ActionEvent event) {
-        model.moveDown();
+        panEarthCanvas(0, 1);
         Debug.trace(DD, "downButtonActionPerformed() " + model.getXOffset() + " " + model.getYOffset());
-        syncEarthCanvas();
     }
 
     @FXML
     void leftButtonActionPerformed(ActionEvent event) {
-        model.moveLeft();
+        panEarthCanvas(-1, 0);
         Debug.trace(DD, "leftButtonActionPerformed() " + model.getXOffset() + " " + model.getYOffset());
-        syncEarthCanvas();
     }
 
     @FXML
     void rightButtonActionPerformed(ActionEvent event) {
-        model.moveRight();
+        panEarthCanvas(1, 0);
         Debug.trace(DD, "rightButtonActionPerformed() " + model.getXOffset() + " " + model.getYOffset());
-        syncEarthCanvas();
     }
 
     @FXML
-    private void shadowButtonActionPerformed(ActionEvent event) {
-        Debug.trace(DD, "shadowButtonActionPerformed() " + shadow);
+    void backButtonActionPerformed(ActionEvent event) {
+        if (model.isPlay()) {
+            playButtonActionPerformed(event);
+        }
 
-        if (shadow) {
-            shadowButton.setText("Shadow");
-            shadowButton.setTooltip(new Tooltip("Enter shadow mode"));
-            shadow = false;
+        if (model.isPlayback()) {
+            model.seekGeneration(model.getGeneration() - 1);
+            syncEarthCanvas();
         } else {
-            shadowButton.setText("Normal");
-            shadowButton.setTooltip(new Tooltip("Return to normal display"));
-            shadow = true;
+            LinkedList<Integer> toggles = model.stepBack();
+            if (toggles != null) {
+                updateEarthCanvas(toggles);
+            }
         }
-        syncEarthCanvas();
+        Debug.trace(DD, "backButtonActionPerformed() " + model.getGeneration());
+        syncBackButton();
+    }
+
+    @FXML
+    private void shadowButtonActionPerformed(ActionEvent event) {
+        Debug.trace(DD, "shadowButtonActionPerformed() " + display);
+
+        setDisplay(display == Display.SHADOW ? Display.NORMAL : Display.SHADOW);
     }
 
     @FXML
@@ -400,12 +951,22 @@ public class PrimaryController {
         syncUI();
     }
 
+    /**
+     * Only enable the "Back" button if there is something to undo.
+     */
+    private void syncBackButton() {
+        backButton.setDisable(!model.canStepBack());
+        syncStatus();
+    }
+
     /**
      * Initialize "Controls" panel.
      */
     private void initializeControls() {
         clearDataButton.setTooltip(new Tooltip("Caution! This irreversible action will reset the form data to default values"));
         shadowButton.setTooltip(new Tooltip("Enter shadow mode"));
+        backButton.setTooltip(new Tooltip("Undo the last generation or edit"));
+        backButton.setDisable(true);
     }
 
 
@@ -417,7 +978,17 @@ public class PrimaryController {
     @FXML
     private VBox earth;
 
-    private boolean shadow = false;
+    // The ways the cells can be displayed.
+    private enum Display { NORMAL, SHADOW, ACTIVITY, AGE }
+
+    private Display display = Display.NORMAL;
+
+    // The counters shown by the heatmap displays, null until first shown.
+    private Heatmap heatmap = null;
+
+    // Ages change without cells being toggled, so when they are displayed
+    // the whole canvas is redrawn every this many generations.
+    private static final int AGE_REFRESH = 8;
 
     private void setFill(int x, int y, boolean state) {
         if (state) {
@@ -442,6 +1013,66 @@ public class PrimaryController {
         }
     }
 
+    /**
+     * Select the colour of a cell from how often it has changed state or,
+     * for a living cell, from its age. Cells with a count of 0 are shown as
+     * normal.
+     */
+    private void setFillHeat(int x, int y, boolean state) {
+        int level = 0;
+        if (display == Display.ACTIVITY)
+            level = Heatmap.getLevel(heatmap.getActivity(x, y));
+        else if (state)
+            level = Heatmap.getLevel(heatmap.getAge(x, y, model.getGeneration()) + 1);
+
+        if (level == 0)
+            setFill(x, y, state);
+        else
+            gc.setFill(ramp[level]);
+    }
+
+    private void setFillDisplay(int x, int y, boolean state) {
+        switch (display) {
+            case NORMAL:
+                setFill(x, y, state);
+                break;
+
+            case SHADOW:
+                setFillGhost(x, y, state);
+                break;
+
+            default:
+                setFillHeat(x, y, state);
+                break;
+        }
+    }
+
+    /**
+     * Change the way the cells are displayed and redraw the canvas.
+     */
+    private void setDisplay(Display value) {
+        display = value;
+        if (display == Display.ACTIVITY || display == Display.AGE)
+            heatmap = model.getHeatmap();
+
+        syncDisplay();
+        syncEarthCanvas();
+    }
+
+    private void syncDisplay() {
+        if (display == Display.SHADOW) {
+            shadowButton.setText("Normal");
+            shadowButton.setTooltip(new Tooltip("Return to normal display"));
+        } else {
+            shadowButton.setText("Shadow");
+            shadowButton.setTooltip(new Tooltip("Enter shadow mode"));
+        }
+        normalMenuItem.setSelected(display == Display.NORMAL);
+        shadowMenuItem.setSelected(display == Display.SHADOW);
+        activityMenuItem.setSelected(display == Display.ACTIVITY);
+        ageMenuItem.setSelected(display == Display.AGE);
+    }
+
     private void setCell(int x, int y) {
 
         // Debug.trace(DD, "setCell() " + x + " " + y + " " + state);
@@ -452,11 +1083,37 @@ public class PrimaryController {
         gc.fillRect(xPos, yPos, size, size);
     }
 
+    // Set when the whole canvas needs to be redrawn on the next pulse.
+    private boolean redraw = false;
+
+    /**
+     * Request a redraw of the whole canvas. Any number of requests made
+     * before the next pulse result in a single redraw, after the layout so
+     * that the size of the canvas is up to date.
+     */
     public void syncEarthCanvas() {
+        if (redraw)
+            return;
+
+        redraw = true;
+        Platform.requestNextPulse();
+    }
+
+    private void redrawEarthCanvas() {
+        if (!redraw || advance != null)
+            return;
+
+        redraw = false;
+        drawEarthCanvas();
+        Startup.complete();
+    }
+
+    private void drawEarthCanvas() {
 
         final double width = model.getEarthWidth();
         final double height = model.getEarthHeight();
-        Debug.trace(DD, "syncEarthCanvas() " + width + " " + height);
+        if (Debug.isTrace(DD))
+            Debug.trace(DD, "drawEarthCanvas() " + width + " " + height);
 
         final int xOrigin = 0;
         final int yOrigin = 0;
@@ -473,53 +1130,105 @@ public class PrimaryController {
         final int xSquares = (int)width / size;
         final int ySquares = (int)height / size;
 
-        if (shadow) {
-            for (int yIndex = 0; yIndex <= ySquares; ++yIndex) {
-                int y = model.getY(yIndex);
-                for (int xIndex = 0; xIndex <= xSquares; ++xIndex) {
-                    int x = model.getX(xIndex);
-                    final boolean state = model.isLiving(x, y);
-                    setFillGhost(x, y, state);
-                    setCell(x, y);
-                }
-            }
-        } else {
-            for (int yIndex = 0; yIndex <= ySquares; ++yIndex) {
-                int y = model.getY(yIndex);
-                for (int xIndex = 0; xIndex <= xSquares; ++xIndex) {
-                    int x = model.getX(xIndex);
-                    final boolean state = model.isLiving(x, y);
-                    setFill(x, y, state);
-                    setCell(x, y);
-                }
+        drawCells(0, xSquares, 0, ySquares);
+    }
+
+    /**
+     * Draw a rectangle of cells, given by their positions on the canvas.
+     * @param left most column index.
+     * @param right most column index.
+     * @param top most row index.
+     * @param bottom most row index.
+     */
+    private void drawCells(int left, int right, int top, int bottom) {
+        for (int yIndex = top; yIndex <= bottom; ++yIndex) {
+            int y = model.getY(yIndex);
+            for (int xIndex = left; xIndex <= right; ++xIndex) {
+                int x = model.getX(xIndex);
+                final boolean state = model.isLiving(x, y);
+                setFillDisplay(x, y, state);
+                setCell(x, y);
             }
         }
     }
 
+    // Copy of the canvas used to shift its pixels when panning.
+    private WritableImage scroll;
+
+    /**
+     * Pan the view by a number of cells. The pixels already on the canvas
+     * are shifted and only the strips of cells that are exposed are drawn.
+     * @param dx cells to move the landscape right, negative for left.
+     * @param dy cells to move the landscape down, negative for up.
+     */
+    private void panEarthCanvas(int dx, int dy) {
+        for (int i = 0; i < dx; ++i)
+            model.moveRight();
+        for (int i = 0; i > dx; --i)
+            model.moveLeft();
+        for (int i = 0; i < dy; ++i)
+            model.moveDown();
+        for (int i = 0; i > dy; --i)
+            model.moveUp();
+
+        // A pending redraw will show the new position anyway.
+        if (redraw)
+            return;
+
+        final int size = model.getSize();
+        final int width = (int)canvas.getWidth();
+        final int height = (int)canvas.getHeight();
+        final int xSquares = width / size;
+        final int ySquares = height / size;
+        if (Math.abs(dx) > xSquares || Math.abs(dy) > ySquares) {
+            syncEarthCanvas();
+            return;
+        }
+
+        if (scroll == null || scroll.getWidth() != width || scroll.getHeight() != height)
+            scroll = new WritableImage(width, height);
+        canvas.snapshot(null, scroll);
+        gc.drawImage(scroll, dx * size, dy * size);
+
+        // The last column and row may only have been partly visible, so are
+        // redrawn along with the exposed strips.
+        if (dx > 0)
+            drawCells(0, dx - 1, 0, ySquares);
+        else if (dx < 0)
+            drawCells(xSquares + dx, xSquares, 0, ySquares);
+
+        if (dy > 0)
+            drawCells(0, xSquares, 0, dy - 1);
+        else if (dy < 0)
+            drawCells(0, xSquares, ySquares + dy, ySquares);
+    }
+
     public void updateEarthCanvas(LinkedList<Integer> toggles) {
         Debug.trace(DD, "updateEarthCanvas() ");
 
-        if (shadow) {
-            for (Integer pos : toggles) {
-                final int x = Model.extractX(pos);
-                final int y = Model.extractY(pos);
-                final boolean state = model.isLiving(x, y);
-                
-                setFillGhost(x, y, state);
-                setCell(x, y);
-            }
-        } else {
-            for (Integer pos : toggles) {
-                final int x = Model.extractX(pos);
-                final int y = Model.extractY(pos);
-                final boolean state = model.isLiving(x, y);
-                
-                setFill(x, y, state);
-                setCell(x, y);
-            }
+        // A pending redraw will show the toggled cells anyway.
+        if (redraw || advance != null)
+            return;
+
+        if (display == Display.AGE && model.getGeneration() % AGE_REFRESH == 0) {
+            syncEarthCanvas();
+            return;
+        }
+
+        for (Integer pos : toggles) {
+            final int x = Model.extractX(pos);
+            final int y = Model.extractY(pos);
+            final boolean state = model.isLiving(x, y);
+            
+            setFillDisplay(x, y, state);
+            setCell(x, y);
         }
     }
 
+    // Position of the mouse when the landscape was last panned by a drag.
+    private double dragX;
+    private double dragY;
+
     private MyTimer timer;
 
     private class MyTimer extends AnimationTimer {
@@ -532,29 +1241,32 @@ public class PrimaryController {
  
                 LinkedList<Integer> toggles = model.nextGeneration();
                 updateEarthCanvas(toggles);
+                syncBackButton();
 
-                Debug.trace(DD, "boom  " + model.getDelta());
+                if (Debug.isTrace(DD))
+                    Debug.trace(DD, "boom  " + model.getDelta());
             }
         }
     }
 
     private void setCellFromMouseClick(int xPos, int yPos) {
 
+        if (!model.isEditable())
+            return;
+
         final int size = model.getSize();
 
         final int x = model.getX(xPos / size);
         final int y = model.getY(yPos / size);
         final boolean state = model.toggleSelected(x, y);
-        if (shadow)
-            setFillGhost(x, y, state);
-        else
-            setFill(x, y, state);
+        setFillDisplay(x, y, state);
 
-        Debug.trace(DD, "setCellFromMouseClick() " + x + " " + y + " " + state);
+        Debug.trace(DD, "setCellFromMouseClick() %d %d %b", x, y, state);
 
         final int xPosCell = model.getXPosition(x);
         final int yPosCell = model.getYPosition(y);
         gc.fillRect(xPosCell, yPosCell, size, size);
+        syncBackButton();
     }
 
     /**
@@ -572,13 +1284,35 @@ public class PrimaryController {
         canvas = new Canvas(width, height);
 
         canvas.setOnMouseClicked(event -> {
+            // A drag pans the view rather than toggling a cell.
+            if (!event.isStillSincePress())
+                return;
+
             final int xPos = (int)(event.getX());
             final int yPos = (int)(event.getY());
-            Debug.trace(DD, "setOnMouseClicked() " + xPos + " " + yPos);
+            Debug.trace(DD, "setOnMouseClicked() %d %d", xPos, yPos);
 
             setCellFromMouseClick(xPos, yPos);
         });
 
+        canvas.setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+
+        canvas.setOnMouseDragged(event -> {
+            // Pan by whole cells, keeping the remainder for the next event.
+            final int size = model.getSize();
+            final int dx = (int)((event.getX() - dragX) / size);
+            final int dy = (int)((event.getY() - dragY) / size);
+            if (dx == 0 && dy == 0)
+                return;
+
+            dragX += dx * size;
+            dragY += dy * size;
+            panEarthCanvas(dx, dy);
+        });
+
         group.getChildren().add(canvas);
 
         // Grab the graphics context while we are here.
@@ -0,0 +1,424 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Recogniser is the class that identifies the objects in the landscape. The
+ * living cells within the bounding box are labelled with a union-find, each
+ * cell being joined to any living neighbour, including across the edges that
+ * the topology of the Model joins. The cells of each cluster are then
+ * threaded into a list through a second array, so no memory is allocated per
+ * cell.
+ *
+ * Each cluster is encoded as the rows of its bounding box in hex and looked
+ * up in a cache of the encodings already seen. On a miss the encoding is
+ * normalised to the smallest of its eight rotations and reflections and
+ * looked up in the table of known objects. Oscillators and spaceships are
+ * known by each of their phases that form a single cluster.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import phillockett65.Debug.Debug;
+
+public class Recogniser {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    public static final String UNIDENTIFIED = "unidentified";
+
+    private static final int MAX_SPAN = 64;
+    private static final int MAX_CELLS = 512;
+    private static final int MAX_CACHE = 1 << 16;
+    private static final int NO_MIRROR = Integer.MIN_VALUE;
+
+    private static final String[][] KNOWN = {
+        { "block",              "oo", "oo" },
+        { "beehive",            ".oo.", "o..o", ".oo." },
+        { "loaf",               ".oo.", "o..o", ".o.o", "..o." },
+        { "boat",               "oo.", "o.o", ".o." },
+        { "ship",               "oo.", "o.o", ".oo" },
+        { "tub",                ".o.", "o.o", ".o." },
+        { "pond",               ".oo.", "o..o", "o..o", ".oo." },
+        { "long boat",          "oo..", "o.o.", ".o.o", "..o." },
+        { "barge",              ".o..", "o.o.", ".o.o", "..o." },
+        { "snake",              "oo.o", "o.oo" },
+        { "eater",              "oo..", "o.o.", "..o.", "..oo" },
+        { "aircraft carrier",   "oo..", "o..o", "..oo" },
+        { "blinker",            "ooo" },
+        { "toad",               ".ooo", "ooo." },
+        { "beacon",             "oo..", "oo..", "..oo", "..oo" },
+        { "glider",             ".o.", "..o", "ooo" },
+        { "glider",             "o.o", ".oo", ".o." },
+        { "lightweight spaceship", "..oo.", "oo.oo", "oooo.", ".oo.." },
+    };
+
+    private final Model model;
+
+    private final HashMap<String, String> known = new HashMap<String, String>();
+    private final HashMap<String, String> cache = new HashMap<String, String>();
+
+    // Union-find over the bounding box, and the cluster lists.
+    private int[] parent = new int[0];
+    private int[] head = new int[0];
+    private int[] link = new int[0];
+
+    // Work arrays for a single cluster.
+    private final int[] xs = new int[MAX_CELLS];
+    private final int[] ys = new int[MAX_CELLS];
+    private final long[] rows = new long[MAX_SPAN];
+
+    private TreeMap<String, Integer> objects = new TreeMap<String, Integer>();
+
+
+
+    /************************************************************************
+     * Support code for encoding clusters.
+     */
+
+    /**
+     * Encode the rows of a set of cells after applying one of the eight
+     * rotations and reflections.
+     * @param xs column of each cell, relative to the bounding box.
+     * @param ys row of each cell, relative to the bounding box.
+     * @param count number of cells.
+     * @param width of the bounding box, at most 64.
+     * @param height of the bounding box, at most 64.
+     * @param transform 0 to 7, bit 0 mirrors x, bit 1 mirrors y and bit 2
+     *                  swaps x and y.
+     * @param rows work array of at least 64 entries.
+     * @return the rows in hex, top to bottom, separated by underscores.
+     */
+    public static String encode(int[] xs, int[] ys, int count, int width, int height, int transform, long[] rows) {
+        final boolean swap = (transform & 4) != 0;
+        final int h = swap ? width : height;
+        for (int i = 0; i < h; ++i)
+            rows[i] = 0;
+
+        for (int i = 0; i < count; ++i) {
+            int x = ((transform & 1) != 0) ? width - 1 - xs[i] : xs[i];
+            int y = ((transform & 2) != 0) ? height - 1 - ys[i] : ys[i];
+            if (swap) {
+                final int t = x;
+                x = y;
+                y = t;
+            }
+            rows[y] |= 1L << x;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < h; ++i) {
+            if (i > 0)
+                builder.append('_');
+            builder.append(Long.toHexString(rows[i]));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @return true if code a sorts before code b, shortest first.
+     */
+    public static boolean isBefore(String a, String b) {
+        if (b == null)
+            return true;
+        if (a.length() != b.length())
+            return a.length() < b.length();
+
+        return a.compareTo(b) < 0;
+    }
+
+    /**
+     * Get the smallest encoding of a set of cells over all eight rotations
+     * and reflections.
+     */
+    public static String canonical(int[] xs, int[] ys, int count, int width, int height, long[] rows) {
+        String best = null;
+        for (int transform = 0; transform < 8; ++transform) {
+            final String code = encode(xs, ys, count, width, height, transform, rows);
+            if (isBefore(code, best))
+                best = code;
+        }
+
+        return best;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the union-find.
+     */
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+
+        return i;
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a < b)
+            parent[b] = a;
+        else if (b < a)
+            parent[a] = b;
+    }
+
+    /**
+     * Get the coordinate of a cell, moved past the far edge if it is in the
+     * near half of a cluster that wraps around the landscape.
+     */
+    private static int unwrap(int v, int size, boolean wrap) {
+        return (wrap && v < size / 2) ? v + size : v;
+    }
+
+    /**
+     * Get the column of a cell relative to the rest of its cluster. A cell
+     * moved past the bottom edge of a Klein bottle is mirrored.
+     * @param mirror the sum of a column and its mirror image, relative to
+     *               the bounding box, or NO_MIRROR if crossing the top or
+     *               bottom edge does not mirror x.
+     */
+    private static int unwrapX(int i, int w, int h, boolean shiftX, boolean shiftY, int mirror) {
+        final int x = unwrap(i / h, w, shiftX);
+
+        return (mirror != NO_MIRROR && shiftY && i % h < h / 2) ? mirror - x : x;
+    }
+
+    /**
+     * Find a neighbour of a cell in the bounding box, following the
+     * topology across the edges of the landscape.
+     * @param x column of the neighbour, which may be just beyond an edge.
+     * @param y row of the neighbour, which may be just beyond an edge.
+     * @return the index of the neighbour in the bounding box, or -1 if it
+     *         is outside the box or the landscape.
+     */
+    private int neighbour(Model.Topology topology, int x, int y, int left, int top, int w, int h) {
+        final int width = model.getWidth();
+        final int height = model.getHeight();
+        if (y < 0 || y >= height) {
+            if (topology == Model.Topology.BOUNDED)
+                return -1;
+
+            // Crossing the top or bottom edge of a Klein bottle mirrors x.
+            if (topology == Model.Topology.KLEIN)
+                x = width - 1 - x;
+            y = Math.floorMod(y, height);
+        }
+        if (x < 0 || x >= width) {
+            if (topology == Model.Topology.BOUNDED)
+                return -1;
+
+            x = Math.floorMod(x, width);
+        }
+
+        x -= left;
+        y -= top;
+
+        return (x >= 0 && x < w && y >= 0 && y < h) ? x * h + y : -1;
+    }
+
+    /**
+     * Name the cluster whose cells are listed from the given root.
+     * @param root of the cluster.
+     * @param w width of the bounding box.
+     * @param h height of the bounding box.
+     * @param wrapX true if the box spans the whole width of the landscape
+     *              and the left and right edges are joined.
+     * @param wrapY true if the box spans the whole height of the landscape
+     *              and the top and bottom edges are joined.
+     * @param mirror the sum of a column and its mirror image, relative to
+     *               the bounding box, or NO_MIRROR if crossing the top or
+     *               bottom edge does not mirror x.
+     */
+    private String identify(int root, int w, int h, boolean wrapX, boolean wrapY, int mirror) {
+        int count = 0;
+        int minX = 0, maxX = 0, minY = 0, maxY = 0;
+        boolean shiftX = false;
+        boolean shiftY = false;
+        for (int pass = 0; pass < 2; ++pass) {
+            count = 0;
+            minX = minY = Integer.MAX_VALUE;
+            maxX = maxY = Integer.MIN_VALUE;
+            for (int i = head[root]; i >= 0; i = link[i]) {
+                final int x = unwrapX(i, w, h, shiftX, shiftY, mirror);
+                final int y = unwrap(i % h, h, shiftY);
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+                ++count;
+            }
+
+            // Only unwrap a cluster that is too wide or tall to identify.
+            if (pass > 0)
+                break;
+            shiftX = wrapX && maxX - minX >= MAX_SPAN;
+            shiftY = wrapY && maxY - minY >= MAX_SPAN;
+            if (!shiftX && !shiftY)
+                break;
+        }
+        if (count > MAX_CELLS || maxX - minX >= MAX_SPAN || maxY - minY >= MAX_SPAN)
+            return UNIDENTIFIED;
+
+        int n = 0;
+        for (int i = head[root]; i >= 0; i = link[i]) {
+            xs[n] = unwrapX(i, w, h, shiftX, shiftY, mirror) - minX;
+            ys[n++] = unwrap(i % h, h, shiftY) - minY;
+        }
+
+        final int width = maxX - minX + 1;
+        final int depth = maxY - minY + 1;
+        final String code = encode(xs, ys, n, width, depth, 0, rows);
+        String name = cache.get(code);
+        if (name == null) {
+            name = known.getOrDefault(canonical(xs, ys, n, width, depth, rows), UNIDENTIFIED);
+            if (cache.size() >= MAX_CACHE)
+                cache.clear();
+            cache.put(code, name);
+        }
+
+        return name;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Recogniser.
+     */
+
+    /**
+     * Constructor.
+     * @param model whose landscape is to be examined.
+     */
+    public Recogniser(Model model) {
+        this.model = model;
+
+        for (String[] object : KNOWN) {
+            int count = 0;
+            for (int y = 1; y < object.length; ++y)
+                for (int x = 0; x < object[y].length(); ++x)
+                    if (object[y].charAt(x) == 'o') {
+                        xs[count] = x;
+                        ys[count++] = y - 1;
+                    }
+
+            known.put(canonical(xs, ys, count, object[1].length(), object.length - 1, rows), object[0]);
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * @return the object counts found by the most recent call to
+     *         recognise(), by name.
+     */
+    public TreeMap<String, Integer> getObjects() { return objects; }
+
+    /**
+     * Label the clusters of living cells in the landscape and count them by
+     * name.
+     * @return the object counts, by name.
+     */
+    public TreeMap<String, Integer> recognise() {
+        objects = new TreeMap<String, Integer>();
+        if (model.getPopulation() == 0)
+            return objects;
+
+        final int width = model.getWidth();
+        final int height = model.getHeight();
+        final int left = model.getMinX();
+        final int right = model.getMaxX();
+        final int top = model.getMinY();
+        final int bottom = model.getMaxY();
+        final int w = right - left + 1;
+        final int h = bottom - top + 1;
+
+        final int area = w * h;
+        if (parent.length < area) {
+            parent = new int[area];
+            head = new int[area];
+            link = new int[area];
+        }
+
+        // Make every living cell its own set.
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y) {
+                final int i = x * h + y;
+                parent[i] = model.isLiving(left + x, top + y) ? i : -1;
+                head[i] = -1;
+            }
+        }
+
+        // Join each living cell to its living neighbours, across the edges
+        // of the landscape where the topology joins them. Crossing the top
+        // or bottom of a Klein bottle does not preserve left and right, so
+        // every neighbour is checked rather than just half of them.
+        final Model.Topology topology = model.getTopology();
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y) {
+                final int i = x * h + y;
+                if (parent[i] < 0)
+                    continue;
+
+                for (int dx = -1; dx <= 1; ++dx) {
+                    for (int dy = -1; dy <= 1; ++dy) {
+                        if (dx == 0 && dy == 0)
+                            continue;
+
+                        final int j = neighbour(topology, left + x + dx, top + y + dy, left, top, w, h);
+                        if (j >= 0 && parent[j] >= 0)
+                            union(i, j);
+                    }
+                }
+            }
+        }
+
+        // Thread the cells of each cluster into a list from its root.
+        for (int i = area - 1; i >= 0; --i) {
+            if (parent[i] >= 0) {
+                final int root = find(i);
+                link[i] = head[root];
+                head[root] = i;
+            }
+        }
+
+        for (int i = 0; i < area; ++i)
+            if (parent[i] == i)
+                objects.merge(identify(i, w, h,
+                    w == width && topology != Model.Topology.BOUNDED,
+                    h == height && topology != Model.Topology.BOUNDED,
+                    (topology == Model.Topology.KLEIN) ? width - 1 - 2 * left : NO_MIRROR), 1, Integer::sum);
+
+        Debug.trace(DD, () -> "recognise() " + objects);
+
+        return objects;
+    }
+
+}
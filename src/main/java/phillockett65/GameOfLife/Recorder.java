@@ -0,0 +1,234 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Recorder is the class that writes a run to disc as an append-only log of
+ * the cells toggled by each generation, so that it can be played back by
+ * Player without re-simulating.
+ *
+ * The file starts with a header followed by a sequence of records. Each
+ * record is a type byte, a varint count and then the sorted packed positions
+ * as varint deltas. A STEP record advances the generation, an EDIT record
+ * does not and a SNAPSHOT record holds all the living cells. A snapshot is
+ * written at the start and then every SNAPSHOT_INTERVAL generations. When
+ * the recording is closed a sparse index of the snapshot offsets is appended
+ * followed by a fixed size trailer that locates the index.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import phillockett65.Debug.Debug;
+
+public class Recorder {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    public static final int MAGIC = 0x474F4C52;     // "GOLR".
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int TRAILER_SIZE = 20;
+
+    public static final byte SNAPSHOT = 0;
+    public static final byte STEP = 1;
+    public static final byte EDIT = 2;
+
+    public static final int SNAPSHOT_INTERVAL = 1024;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long offset = 0;
+    private long generation;
+    private int[] cells = new int[1024];
+
+    private final ArrayList<Long> indexGenerations = new ArrayList<Long>();
+    private final ArrayList<Long> indexOffsets = new ArrayList<Long>();
+
+
+
+    /************************************************************************
+     * General support code.
+     */
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush();
+    }
+
+    private void putByte(byte value) throws IOException {
+        ensure(1);
+        buffer.put(value);
+        ++offset;
+    }
+
+    private void putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+        offset += 4;
+    }
+
+    private void putLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+        offset += 8;
+    }
+
+    private void putVarint(int value) throws IOException {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+            ++offset;
+        }
+        buffer.put((byte)value);
+        ++offset;
+    }
+
+    /**
+     * Write a record of sorted packed positions.
+     * @param type of record.
+     * @param positions array, only the first count entries are used.
+     * @param count of positions.
+     */
+    private void putRecord(byte type, int[] positions, int count) throws IOException {
+        Arrays.sort(positions, 0, count);
+
+        putByte(type);
+        putVarint(count);
+        int previous = 0;
+        for (int i = 0; i < count; ++i) {
+            putVarint(positions[i] - previous);
+            previous = positions[i];
+        }
+    }
+
+    private void putRecord(byte type, Collection<Integer> positions) throws IOException {
+        final int count = positions.size();
+        if (cells.length < count)
+            cells = new int[Math.max(count, cells.length * 2)];
+
+        int i = 0;
+        for (Integer pos : positions)
+            cells[i++] = pos;
+
+        putRecord(type, cells, count);
+    }
+
+    private void putSnapshot(int[] living) throws IOException {
+        indexGenerations.add(generation);
+        indexOffsets.add(offset);
+        putRecord(SNAPSHOT, living, living.length);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Recorder.
+     */
+
+    /**
+     * Create a new recording, overwriting any existing file.
+     * @param file to record to.
+     * @param width of the landscape.
+     * @param height of the landscape.
+     * @param start generation of the initial state.
+     * @param living packed positions of the initial living cells.
+     */
+    public Recorder(File file, int width, int height, long start, int[] living) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        generation = start;
+
+        putInt(MAGIC);
+        putInt(VERSION);
+        putInt(width);
+        putInt(height);
+        putLong(start);
+        putSnapshot(living.clone());
+        Debug.trace(DD, "Recorder() " + file + " from generation " + start);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public long getGeneration() { return generation; }
+
+    /**
+     * Append the cells toggled by a generation.
+     * @param toggles packed positions of the toggled cells.
+     * @param model to take a snapshot from when one is due.
+     */
+    public void step(Collection<Integer> toggles, Model model) throws IOException {
+        ++generation;
+        putRecord(STEP, toggles);
+
+        if (generation % SNAPSHOT_INTERVAL == 0)
+            putSnapshot(model.getLivingCells());
+    }
+
+    /**
+     * Append cells toggled without advancing the generation.
+     * @param toggles packed positions of the toggled cells.
+     */
+    public void edit(Collection<Integer> toggles) throws IOException {
+        putRecord(EDIT, toggles);
+    }
+
+    /**
+     * Append the index and the trailer then close the file.
+     */
+    public void close() throws IOException {
+        final long indexOffset = offset;
+        putInt(indexGenerations.size());
+        for (int i = 0; i < indexGenerations.size(); ++i) {
+            putLong(indexGenerations.get(i));
+            putLong(indexOffsets.get(i));
+        }
+
+        putLong(indexOffset);
+        putLong(generation);
+        putInt(MAGIC);
+
+        flush();
+        channel.close();
+        Debug.trace(DD, "Recorder.close() at generation " + generation);
+    }
+
+}
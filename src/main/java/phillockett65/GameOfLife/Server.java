@@ -0,0 +1,471 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Server is the class that steps the Model headlessly and broadcasts each
+ * generation to any number of WebSocket subscribers as binary messages.
+ *
+ * Each subscriber has its own sender thread and a pending bit set of the
+ * cells that have changed since its last message. After every generation
+ * the simulation thread XORs the toggled cells into each subscriber's
+ * pending set, so a subscriber that falls behind receives a single coalesced
+ * delta and the simulation never waits for a slow connection. A new
+ * subscriber is sent a full snapshot first.
+ *
+ * Message layout, big-endian:
+ *  SNAPSHOT: type 0, generation long, width int, height int, cells.
+ *  DELTA:    type 1, generation long, cells.
+ * The cells are a varint count followed by the sorted packed positions, as
+ * produced by Model.encode(), as varint deltas.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import phillockett65.Debug.Debug;
+
+public class Server {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    public static final byte SNAPSHOT = 0;
+    public static final byte DELTA = 1;
+
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    // Clients only send control frames, so anything larger is refused.
+    private static final int MAX_CONTROL = 125;
+    private static final int MAX_PAYLOAD = 1024;
+
+    private final Model model;
+    private final int height;
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+
+
+
+    /************************************************************************
+     * Support code for message encoding.
+     */
+
+    private static void putVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void putLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8)
+            out.write((int)(value >> shift));
+    }
+
+    private static void putInt(ByteArrayOutputStream out, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8)
+            out.write(value >> shift);
+    }
+
+    /**
+     * Encode the set cells of a bit set indexed by x * height + y.
+     */
+    private void putCells(ByteArrayOutputStream out, BitSet cells) {
+        putVarint(out, cells.cardinality());
+        int previous = 0;
+        for (int i = cells.nextSetBit(0); i >= 0; i = cells.nextSetBit(i + 1)) {
+            final int pos = Model.encode(i / height, i % height);
+            putVarint(out, pos - previous);
+            previous = pos;
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for subscribers.
+     */
+
+    private class Subscriber {
+        private final Socket socket;
+        private final OutputStream out;
+
+        private BitSet pending;
+        private BitSet sending;
+        private boolean snapshot = true;
+        private boolean dirty = true;
+        private long generation;
+        private boolean open = true;
+
+        Subscriber(Socket socket, BitSet living, long generation) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+            this.pending = living;
+            this.sending = new BitSet(living.size());
+            this.generation = generation;
+        }
+
+        /**
+         * Called by the simulation thread, never blocks on the connection.
+         */
+        synchronized void toggled(Collection<Integer> toggles, long gen) {
+            for (Integer pos : toggles)
+                pending.flip(Model.extractX(pos) * height + Model.extractY(pos));
+            generation = gen;
+            dirty = true;
+            notifyAll();
+        }
+
+        synchronized void close() {
+            open = false;
+            notifyAll();
+        }
+
+        /**
+         * Send the snapshot then the coalesced deltas until closed.
+         */
+        void send() {
+            try {
+                while (true) {
+                    boolean full;
+                    long gen;
+                    synchronized (this) {
+                        while (open && !dirty)
+                            wait();
+                        if (!open)
+                            break;
+
+                        BitSet swap = sending;
+                        sending = pending;
+                        pending = swap;
+                        full = snapshot;
+                        gen = generation;
+                        snapshot = false;
+                        dirty = false;
+                    }
+
+                    ByteArrayOutputStream message = new ByteArrayOutputStream();
+                    message.write(full ? SNAPSHOT : DELTA);
+                    putLong(message, gen);
+                    if (full) {
+                        putInt(message, model.getWidth());
+                        putInt(message, model.getHeight());
+                    }
+                    putCells(message, sending);
+                    sending.clear();
+
+                    writeFrame(out, 0x2, message.toByteArray());
+                }
+            } catch (IOException | InterruptedException e) {
+                Debug.trace(DD, "Server subscriber closed: %s", e.getMessage());
+            } finally {
+                unsubscribe(this);
+            }
+        }
+
+        /**
+         * Read frames from the client, only close and ping are acted on. The
+         * connection is dropped if a frame is too large.
+         */
+        void receive() {
+            try {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                while (true) {
+                    final int opcode = in.readUnsignedByte() & 0x0F;
+                    final int second = in.readUnsignedByte();
+                    long length = second & 0x7F;
+                    if (length == 126)
+                        length = in.readUnsignedShort();
+                    else if (length == 127)
+                        length = in.readLong();
+
+                    final boolean control = (opcode & 0x8) != 0;
+                    if (length < 0 || length > (control ? MAX_CONTROL : MAX_PAYLOAD)) {
+                        Debug.warning(DD, "Server subscriber sent a frame of %d bytes", length);
+                        break;
+                    }
+
+                    byte[] mask = new byte[4];
+                    if ((second & 0x80) != 0)
+                        in.readFully(mask);
+
+                    byte[] payload = new byte[(int)length];
+                    in.readFully(payload);
+                    for (int i = 0; i < payload.length; ++i)
+                        payload[i] ^= mask[i & 3];
+
+                    if (opcode == 0x8) {
+                        synchronized (out) {
+                            writeFrame(out, 0x8, new byte[0]);
+                        }
+                        break;
+                    }
+                    if (opcode == 0x9)
+                        writeFrame(out, 0xA, payload);
+                }
+            } catch (IOException e) {
+                Debug.trace(DD, "Server subscriber disconnected");
+            } finally {
+                unsubscribe(this);
+            }
+        }
+    }
+
+    private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+        synchronized (out) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            header.write(0x80 | opcode);
+            if (payload.length < 126) {
+                header.write(payload.length);
+            } else if (payload.length < 65536) {
+                header.write(126);
+                header.write(payload.length >> 8);
+                header.write(payload.length);
+            } else {
+                header.write(127);
+                putLong(header, payload.length);
+            }
+            header.writeTo(out);
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriber.close();
+            try {
+                subscriber.socket.close();
+            } catch (IOException e) {
+                Debug.critical(DD, e.getMessage());
+            }
+            Debug.trace(DD, "Server %d subscribers", subscribers.size());
+        }
+    }
+
+    /**
+     * Complete the WebSocket opening handshake.
+     * @return true if the connection was upgraded.
+     */
+    private static boolean handshake(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1), 1);
+        String key = null;
+        for (String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine()) {
+            final int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key"))
+                key = line.substring(colon + 1).trim();
+        }
+
+        OutputStream out = socket.getOutputStream();
+        if (key == null) {
+            out.write("HTTP/1.1 400 Bad Request\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            return false;
+        }
+
+        String accept;
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            accept = Base64.getEncoder().encodeToString(
+                sha1.digest((key + GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        out.write(("HTTP/1.1 101 Switching Protocols\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+
+        return true;
+    }
+
+    /**
+     * Upgrade a connection and subscribe it, starting with a snapshot.
+     */
+    private void subscribe(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            if (!handshake(socket)) {
+                socket.close();
+                return;
+            }
+
+            Subscriber subscriber;
+            synchronized (model) {
+                BitSet living = new BitSet(model.getWidth() * height);
+                for (int pos : model.getLivingCells())
+                    living.set(Model.extractX(pos) * height + Model.extractY(pos));
+                subscriber = new Subscriber(socket, living, model.getGeneration());
+                subscribers.add(subscriber);
+            }
+
+            Thread sender = new Thread(subscriber::send, "Server sender");
+            sender.setDaemon(true);
+            sender.start();
+            subscriber.receive();
+        } catch (IOException e) {
+            Debug.warning(DD, "Server handshake failed: %s", e.getMessage());
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Server.
+     */
+
+    /**
+     * Constructor.
+     * @param model to step and broadcast.
+     */
+    public Server(Model model) {
+        this.model = model;
+        this.height = model.getHeight();
+    }
+
+    /**
+     * Accept subscribers on a background thread.
+     * @param port to listen on.
+     */
+    public void listen(int port) throws IOException {
+        ServerSocket server = new ServerSocket(port);
+        Thread acceptor = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket socket = server.accept();
+                    Thread thread = new Thread(() -> subscribe(socket), "Server receiver");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    Debug.critical(DD, e.getMessage());
+                    break;
+                }
+            }
+        }, "Server acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Debug.trace(DD, "Server listening on port %d", port);
+    }
+
+    /**
+     * Step the model and hand the toggled cells of each generation to every
+     * subscriber.
+     * @param rate maximum generations per second, 0 for no limit.
+     */
+    public void run(int rate) throws InterruptedException {
+        final long interval = (rate > 0) ? 1000000000L / rate : 0;
+        long next = System.nanoTime();
+        while (true) {
+            synchronized (model) {
+                Collection<Integer> toggles = model.nextGeneration();
+                final long generation = model.getGeneration();
+                for (Subscriber subscriber : subscribers)
+                    subscriber.toggled(toggles, generation);
+            }
+
+            next += interval;
+            final long delay = next - System.nanoTime();
+            if (delay > 0)
+                Thread.sleep(delay / 1000000, (int)(delay % 1000000));
+            else
+                next = System.nanoTime();
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for the command line.
+     */
+
+    private static void usage() {
+        System.err.println("Usage: server [options]");
+        System.err.println("  --port N          port to accept WebSocket viewers on (default 8080)");
+        System.err.println("  --rate N          maximum generations per second, 0 for no limit (default 10)");
+        System.err.println("  --recording FILE  play back a recording instead of simulating");
+        System.err.println("  --soup DENSITY    seed the landscape with a random soup (default 0.35)");
+        System.err.println("  --seed N          random seed for the soup (default 1)");
+    }
+
+    /**
+     * Headless entry point.
+     * @param args command line options, see usage().
+     * @return non-zero on failure, otherwise runs until killed.
+     */
+    public static int main(String[] args) {
+        int port = 8080;
+        int rate = 10;
+        java.io.File recording = null;
+        double density = 0.35;
+        long seed = 1;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--port":      port = Integer.parseInt(args[++i]); break;
+                    case "--rate":      rate = Integer.parseInt(args[++i]); break;
+                    case "--recording": recording = new java.io.File(args[++i]); break;
+                    case "--soup":      density = Double.parseDouble(args[++i]); break;
+                    case "--seed":      seed = Long.parseLong(args[++i]); break;
+                    default:            throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            usage();
+            return 1;
+        }
+
+        Model model = Model.create();
+
+        try {
+            if (recording != null) {
+                model.startPlayback(recording);
+            } else {
+                model.fillRegion(0, 0, model.getWidth(), model.getHeight(), density, seed);
+            }
+
+            Server server = new Server(model);
+            server.listen(port);
+            server.run(rate);
+        } catch (IOException | InterruptedException e) {
+            Debug.critical(DD, e.getMessage());
+            return 1;
+        }
+
+        return 0;
+    }
+
+}
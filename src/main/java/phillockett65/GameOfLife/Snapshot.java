@@ -0,0 +1,106 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Snapshot is the class that holds a completed generation of the landscape,
+ * one bit per cell, for threads that read it while another thread steps the
+ * Model. A Snapshot does not change while it is held, so it must be closed
+ * as soon as it is no longer needed to let Snapshots reuse it.
+ *
+ * The count of readers is -1 while Snapshots is updating it, so a reader can
+ * only hold it when it is complete.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Snapshot implements AutoCloseable {
+
+    private final int height;
+    final long[] bits;
+    final AtomicInteger readers = new AtomicInteger(0);
+
+    // Only changed by Snapshots while the count of readers is -1.
+    long generation = 0;
+    int population = 0;
+
+    // Only used by the stepping thread: the toggles made since the snapshot
+    // was last updated, or stale if they were too many to keep.
+    final ArrayList<int[]> pending = new ArrayList<int[]>();
+    int pendingCells = 0;
+    boolean stale = true;
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of Snapshot.
+     */
+
+    /**
+     * Constructor.
+     * @param width of the landscape in cells.
+     * @param height of the landscape in cells.
+     */
+    Snapshot(int width, int height) {
+        this.height = height;
+        bits = new long[(width * height + 63) / 64];
+    }
+
+    /**
+     * Change the state of a cell.
+     */
+    void flip(int pos) {
+        final int index = Model.extractX(pos) * height + Model.extractY(pos);
+        bits[index >>> 6] ^= 1L << index;
+    }
+
+    /**
+     * Try to start holding the snapshot.
+     * @return true if it is now held, false if it is being updated.
+     */
+    boolean acquire() {
+        final int count = readers.get();
+        return count >= 0 && readers.compareAndSet(count, count + 1);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public long getGeneration() { return generation; }
+    public int getPopulation() { return population; }
+
+    public boolean isLiving(int x, int y) {
+        final int index = x * height + y;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Stop holding the snapshot.
+     */
+    @Override
+    public void close() {
+        readers.decrementAndGet();
+    }
+
+}
@@ -0,0 +1,184 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Snapshots is the class that publishes completed generations of a Model to
+ * other threads without locks, using three Snapshot buffers. The thread
+ * stepping the Model journals every toggled cell and, once a generation is
+ * complete, brings a buffer that no reader holds up to date by applying the
+ * toggles it has missed, then publishes it through a single volatile
+ * reference. Readers take the published buffer by incrementing its count of
+ * readers, so a buffer is never changed while it is held.
+ *
+ * The whole landscape is only copied when the buffers are first filled, or
+ * when a buffer has missed too many toggles or the landscape was cleared.
+ * If every other buffer is held the generation is not published and readers
+ * continue to see the previous one.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.Arrays;
+
+public class Snapshots {
+
+    private static final int BUFFERS = 3;
+
+    private final Model model;
+    private final int width;
+    private final int height;
+
+    // Toggles missed by a buffer beyond this are replaced by a full copy.
+    private final int maxPending;
+
+    private final Snapshot[] buffers = new Snapshot[BUFFERS];
+    private volatile Snapshot published;
+
+    // Cells toggled since the last publication.
+    private int[] journal = new int[1024];
+    private int journalLength = 0;
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of Snapshots.
+     */
+
+    /**
+     * Constructor, which publishes the current state of the Model. It must
+     * be called by the thread stepping the Model.
+     * @param model to publish the generations of.
+     */
+    public Snapshots(Model model) {
+        this.model = model;
+        width = model.getWidth();
+        height = model.getHeight();
+        maxPending = width * height / 16;
+
+        for (int i = 0; i < BUFFERS; ++i)
+            buffers[i] = new Snapshot(width, height);
+
+        update(buffers[0]);
+        published = buffers[0];
+    }
+
+
+
+    /************************************************************************
+     * Support code for the stepping thread.
+     */
+
+    /**
+     * Record that a cell has changed state.
+     */
+    public void toggled(int pos) {
+        if (journalLength == journal.length)
+            journal = Arrays.copyOf(journal, journal.length * 2);
+        journal[journalLength++] = pos;
+    }
+
+    /**
+     * Record that the landscape has changed too much to journal, so every
+     * buffer needs a full copy.
+     */
+    public void invalidate() {
+        journalLength = 0;
+        for (Snapshot buffer : buffers) {
+            buffer.pending.clear();
+            buffer.pendingCells = 0;
+            buffer.stale = true;
+        }
+    }
+
+    /**
+     * Bring a buffer that is being updated up to date with the Model.
+     */
+    private void update(Snapshot buffer) {
+        if (buffer.stale) {
+            Arrays.fill(buffer.bits, 0L);
+            for (int x = 0; x < width; ++x)
+                for (int y = 0; y < height; ++y)
+                    if (model.isLiving(x, y))
+                        buffer.flip(Model.encode(x, y));
+        } else {
+            for (int[] cells : buffer.pending)
+                for (int pos : cells)
+                    buffer.flip(pos);
+        }
+        buffer.pending.clear();
+        buffer.pendingCells = 0;
+        buffer.stale = false;
+
+        buffer.generation = model.getGeneration();
+        buffer.population = model.getPopulation();
+    }
+
+    /**
+     * Publish the current state of the Model, which must be complete.
+     */
+    public void publish() {
+        if (journalLength > 0) {
+            final int[] cells = Arrays.copyOf(journal, journalLength);
+            journalLength = 0;
+            for (Snapshot buffer : buffers) {
+                if (buffer.stale)
+                    continue;
+
+                buffer.pendingCells += cells.length;
+                if (buffer.pendingCells > maxPending) {
+                    buffer.pending.clear();
+                    buffer.stale = true;
+                } else {
+                    buffer.pending.add(cells);
+                }
+            }
+        }
+
+        for (Snapshot buffer : buffers) {
+            if (buffer == published || !buffer.readers.compareAndSet(0, -1))
+                continue;
+
+            update(buffer);
+            buffer.readers.set(0);
+            published = buffer;
+            return;
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * Get the most recently published generation, which any thread may do
+     * while the Model is being stepped. The snapshot must be closed when it
+     * is no longer needed.
+     * @return the snapshot, held until closed.
+     */
+    public Snapshot acquire() {
+        while (true) {
+            final Snapshot snapshot = published;
+            if (snapshot.acquire())
+                return snapshot;
+        }
+    }
+
+}
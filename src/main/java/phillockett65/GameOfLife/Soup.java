@@ -0,0 +1,446 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Soup is the class that searches random soups and counts the objects left
+ * once they settle, in the manner of apgsearch. Each soup is a 16 x 16
+ * random square in the middle of a Torus, seeded from its own index so the
+ * census is the same however many threads are used. A soup is run until a
+ * state recurs, then the live cells are split into clusters and each cluster
+ * is run on its own to find its period and whether it moves. Clusters are
+ * found in the union of the first few phases of the settled board, so that
+ * an oscillator such as the toad, which falls apart into separate pieces in
+ * one of its phases, is kept whole.
+ *
+ * Objects are named with a prefix followed by their smallest encoding over
+ * every rotation, reflection and phase: xs<population> for still lifes,
+ * xp<period> for oscillators and xq<period> for spaceships. The encoding is
+ * the rows of the object in hex, top to bottom, separated by underscores, so
+ * a block is xs4_3_3 and a blinker is xp2_7.
+ *
+ * Each thread reuses its own boards and work arrays, and the census is a
+ * concurrent map of striped counters so the threads never wait for each
+ * other.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import phillockett65.Debug.Debug;
+
+public class Soup {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    private static final int SOUP_SIZE = 16;
+    private static final int MAX_SPAN = 24;
+    private static final int ISOLATE = 32;
+    private static final int PHASES = 8;
+    private static final int CENTRE = Torus.SIZE / 2;
+
+    public static final String OVERSIZED = "oversized";
+    public static final String UNSETTLED = "unsettled";
+
+    private final int rule;
+    private final long seed;
+    private final double density;
+    private final int limit;
+    private final long soups;
+
+    private final AtomicLong nextSoup = new AtomicLong();
+    private final ConcurrentHashMap<String, LongAdder> census = new ConcurrentHashMap<String, LongAdder>();
+
+
+
+    /************************************************************************
+     * Support code for the search.
+     */
+
+    /*
+     * A Search holds the boards and work arrays of one thread.
+     */
+    private class Search {
+        private final Torus board = new Torus(limit);
+        private final Torus scratch = new Torus(ISOLATE);
+
+        private final long[] settled = new long[Torus.SIZE];
+        private final long[] union = new long[Torus.SIZE];
+        private final long[] visited = new long[Torus.SIZE];
+        private final int[] stackX = new int[Torus.SIZE * Torus.SIZE];
+        private final int[] stackY = new int[Torus.SIZE * Torus.SIZE];
+        private final int[] xs = new int[Torus.SIZE * Torus.SIZE];
+        private final int[] ys = new int[Torus.SIZE * Torus.SIZE];
+        private final long[] rows = new long[Torus.SIZE];
+
+        Search() {
+            board.setRule(rule);
+            scratch.setRule(rule);
+        }
+
+        private void tally(String name) {
+            census.computeIfAbsent(name, k -> new LongAdder()).increment();
+        }
+
+        /**
+         * Fill the middle of the board with a soup seeded from its index.
+         */
+        private void seed(long index) {
+            SplittableRandom random = new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+            board.clear();
+            final int offset = CENTRE - SOUP_SIZE / 2;
+            for (int y = 0; y < SOUP_SIZE; ++y)
+                for (int x = 0; x < SOUP_SIZE; ++x)
+                    if (random.nextDouble() < density)
+                        board.set(offset + x, offset + y);
+        }
+
+        /**
+         * Collect the settled cells of the cluster of union cells connected
+         * to the given cell into xs and ys, using unwrapped coordinates so
+         * that a cluster that crosses the edge of the torus stays in one
+         * piece.
+         * @return the number of settled cells in the cluster.
+         */
+        private int collect(int x0, int y0) {
+            int count = 0;
+            int top = 0;
+            stackX[top] = x0;
+            stackY[top++] = y0;
+            visited[y0] |= 1L << x0;
+
+            while (top > 0) {
+                final int x = stackX[--top];
+                final int y = stackY[top];
+                if (((settled[y & (Torus.SIZE - 1)] >>> (x & (Torus.SIZE - 1))) & 1) != 0) {
+                    xs[count] = x;
+                    ys[count++] = y;
+                }
+
+                for (int dy = -1; dy <= 1; ++dy) {
+                    for (int dx = -1; dx <= 1; ++dx) {
+                        final int nx = x + dx;
+                        final int ny = y + dy;
+                        final int wy = ny & (Torus.SIZE - 1);
+                        final long bit = 1L << (nx & (Torus.SIZE - 1));
+                        if ((visited[wy] & bit) == 0 && (union[wy] & bit) != 0) {
+                            visited[wy] |= bit;
+                            stackX[top] = nx;
+                            stackY[top++] = ny;
+                        }
+                    }
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * Read the cells of the scratch board into xs and ys relative to
+         * their bounding box.
+         * @param box receives the left, top, width and height of the box.
+         * @return the number of cells.
+         */
+        private int extract(int[] box) {
+            int top = -1, bottom = -1;
+            long columns = 0;
+            for (int y = 0; y < Torus.SIZE; ++y) {
+                final long row = scratch.getRow(y);
+                if (row != 0) {
+                    if (top < 0)
+                        top = y;
+                    bottom = y;
+                    columns |= row;
+                }
+            }
+            if (top < 0)
+                return 0;
+
+            final int left = Long.numberOfTrailingZeros(columns);
+            box[0] = left;
+            box[1] = top;
+            box[2] = 64 - Long.numberOfLeadingZeros(columns) - left;
+            box[3] = bottom - top + 1;
+
+            int count = 0;
+            for (int y = top; y <= bottom; ++y) {
+                for (long row = scratch.getRow(y); row != 0; row &= row - 1) {
+                    xs[count] = Long.numberOfTrailingZeros(row) - left;
+                    ys[count++] = y - top;
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * Run a cluster on its own to find its period and displacement and
+         * name it.
+         * @return the name of the object or null if it dies on its own.
+         */
+        private String identify(int count) {
+            int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+            int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < count; ++i) {
+                minX = Math.min(minX, xs[i]);
+                maxX = Math.max(maxX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            if (maxX - minX >= MAX_SPAN || maxY - minY >= MAX_SPAN)
+                return OVERSIZED;
+
+            final int ox = CENTRE - (maxX - minX) / 2 - minX;
+            final int oy = CENTRE - (maxY - minY) / 2 - minY;
+            scratch.clear();
+            for (int i = 0; i < count; ++i)
+                scratch.set(xs[i] + ox, ys[i] + oy);
+            scratch.begin();
+
+            int[] box = new int[4];
+            int[] start = null;
+            String first = null;
+            String best = null;
+            for (int generation = 0; generation <= ISOLATE; ++generation) {
+                final int cells = extract(box);
+                if (cells == 0)
+                    return null;
+
+                final String identity = Recogniser.encode(xs, ys, cells, box[2], box[3], 0, rows);
+                if (first == null) {
+                    first = identity;
+                    start = box.clone();
+                } else if (identity.equals(first)) {
+                    final boolean moved = box[0] != start[0] || box[1] != start[1];
+                    if (generation == 1 && !moved)
+                        return "xs" + cells + "_" + best;
+
+                    return (moved ? "xq" : "xp") + generation + "_" + best;
+                }
+
+                for (int transform = 0; transform < 8; ++transform) {
+                    final String code = (transform == 0) ? identity :
+                        Recogniser.encode(xs, ys, cells, box[2], box[3], transform, rows);
+                    if (Recogniser.isBefore(code, best))
+                        best = code;
+                }
+
+                scratch.step();
+            }
+
+            return "unknown_" + best;
+        }
+
+        /**
+         * Split the settled board into clusters and tally each object.
+         */
+        private void count() {
+            for (int y = 0; y < Torus.SIZE; ++y) {
+                settled[y] = board.getRow(y);
+                union[y] = settled[y];
+                visited[y] = 0;
+            }
+
+            final int phases = Math.min(board.getPeriod(), PHASES);
+            for (int phase = 1; phase < phases; ++phase) {
+                board.step();
+                for (int y = 0; y < Torus.SIZE; ++y)
+                    union[y] |= board.getRow(y);
+            }
+
+            for (int y = 0; y < Torus.SIZE; ++y) {
+                for (long row = union[y] & ~visited[y]; row != 0; row = union[y] & ~visited[y]) {
+                    final int cells = collect(Long.numberOfTrailingZeros(row), y);
+                    if (cells == 0)
+                        continue;
+
+                    final String name = identify(cells);
+                    if (name != null)
+                        tally(name);
+                }
+            }
+        }
+
+        /**
+         * Run one soup until it settles and tally the objects left.
+         */
+        private void run(long index) {
+            seed(index);
+            board.begin();
+            while (board.recurrence() < 0) {
+                if (board.isLimit()) {
+                    tally(UNSETTLED);
+                    return;
+                }
+                board.step();
+            }
+
+            count();
+        }
+    }
+
+    /**
+     * Take soups from the shared counter until they have all been run.
+     */
+    private void work() {
+        Search search = new Search();
+        for (long i = nextSoup.getAndIncrement(); i < soups; i = nextSoup.getAndIncrement())
+            search.run(i);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Soup search.
+     */
+
+    /**
+     * Constructor.
+     * @param rule index, see Torus.
+     * @param soups number of soups to run.
+     * @param seed for the soups.
+     * @param density of the soups.
+     * @param limit maximum number of generations per soup.
+     */
+    public Soup(int rule, long soups, long seed, double density, int limit) {
+        this.rule = rule;
+        this.soups = soups;
+        this.seed = seed;
+        this.density = density;
+        this.limit = limit;
+    }
+
+    /**
+     * Run all the soups using a pool of threads.
+     * @param threads number of threads to use.
+     */
+    public void run(int threads) throws InterruptedException {
+        nextSoup.set(0);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; ++i)
+            pool.execute(this::work);
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * Write the census, most common object first.
+     */
+    public void write(PrintStream out) {
+        ArrayList<Map.Entry<String, LongAdder>> entries = new ArrayList<>(census.entrySet());
+        entries.sort((a, b) -> {
+            final int order = Long.compare(b.getValue().sum(), a.getValue().sum());
+            return (order != 0) ? order : a.getKey().compareTo(b.getKey());
+        });
+
+        for (Map.Entry<String, LongAdder> entry : entries)
+            out.println(entry.getValue().sum() + " " + entry.getKey());
+    }
+
+
+
+    /************************************************************************
+     * Support code for the command line.
+     */
+
+    private static void usage() {
+        System.err.println("Usage: soup [options]");
+        System.err.println("  --rule RULE       rule in B/S notation (default B3/S23)");
+        System.err.println("  --soups N         number of soups to run (default 10000)");
+        System.err.println("  --soup DENSITY    density of the soups (default 0.5)");
+        System.err.println("  --seed N          random seed for the soups (default 1)");
+        System.err.println("  --limit N         maximum generations per soup (default 4000)");
+        System.err.println("  --threads N       number of threads (default all cores)");
+        System.err.println("  --out FILE        write the census to FILE instead of stdout");
+    }
+
+    /**
+     * Headless entry point.
+     * @param args command line options, see usage().
+     * @return 0 on success, non-zero otherwise.
+     */
+    public static int main(String[] args) {
+        int rule = Torus.parseRule("B3/S23");
+        long soups = 10000;
+        double density = 0.5;
+        long seed = 1;
+        int limit = 4000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File output = null;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--rule":      rule = Torus.parseRule(args[++i]); break;
+                    case "--soups":     soups = Long.parseLong(args[++i]); break;
+                    case "--soup":      density = Double.parseDouble(args[++i]); break;
+                    case "--seed":      seed = Long.parseLong(args[++i]); break;
+                    case "--limit":     limit = Integer.parseInt(args[++i]); break;
+                    case "--threads":   threads = Integer.parseInt(args[++i]); break;
+                    case "--out":       output = new File(args[++i]); break;
+                    default:            throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            usage();
+            return 1;
+        }
+
+        if (soups <= 0 || limit <= 0 || threads <= 0) {
+            usage();
+            return 1;
+        }
+
+        Soup search = new Soup(rule, soups, seed, density, limit);
+        try (PrintStream out = (output == null) ? null : new PrintStream(output)) {
+            final long start = System.nanoTime();
+            search.run(threads);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+
+            search.write((out == null) ? System.out : out);
+
+            System.err.printf("Searched %d soups in %.2fs, %.1f soups/s%n",
+                soups, seconds, soups / seconds);
+        } catch (FileNotFoundException | InterruptedException e) {
+            Debug.critical(DD, e.getMessage());
+            return 1;
+        }
+
+        return 0;
+    }
+
+}
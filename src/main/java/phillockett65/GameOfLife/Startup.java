@@ -0,0 +1,98 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Startup is the static class that times the phases of starting the GUI, from
+ * the launch of the JVM to the first frame being drawn, and reports them on
+ * a single line so that the time to first frame can be tracked.
+ *
+ * If the system property startup.exit is true the application exits once the
+ * first frame has been drawn, which is used to produce a class data sharing
+ * archive of the classes needed to start up.
+ */
+package phillockett65.GameOfLife;
+
+import java.time.Instant;
+
+import javafx.application.Platform;
+
+public class Startup {
+
+    private static boolean timing = false;
+    private static long mark;
+    private static long total;
+    private static final StringBuilder phases = new StringBuilder();
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * Start timing, recording the time taken for the JVM to reach main().
+     */
+    public static synchronized void begin() {
+        timing = true;
+        mark = System.nanoTime();
+
+        final long started = ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(0L);
+        if (started > 0) {
+            total = (System.currentTimeMillis() - started) * 1000000L;
+            phases.append("jvm ").append(total / 1000000L).append("ms");
+        }
+    }
+
+    /**
+     * Record the time taken by a phase, measured from the end of the
+     * previous one.
+     * @param name of the phase that has just finished.
+     */
+    public static synchronized void phase(String name) {
+        if (!timing)
+            return;
+
+        final long now = System.nanoTime();
+        final long elapsed = now - mark;
+        mark = now;
+        total += elapsed;
+
+        if (phases.length() > 0)
+            phases.append(", ");
+        phases.append(name).append(' ').append(elapsed / 1000000L).append("ms");
+    }
+
+    /**
+     * Record the first frame and report the phases. Only the first call has
+     * any effect.
+     */
+    public static synchronized void complete() {
+        if (!timing)
+            return;
+
+        phase("first frame");
+        timing = false;
+        System.err.println("Startup: " + phases + ", total " + total / 1000000L + "ms");
+
+        if (Boolean.getBoolean("startup.exit"))
+            Platform.exit();
+    }
+
+}
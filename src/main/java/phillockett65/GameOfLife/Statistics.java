@@ -0,0 +1,160 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Statistics is the class that maintains the population, the number of
+ * living cells in each row and column and the bounding box of the living
+ * cells. It is updated one toggled cell at a time so it never needs to scan
+ * the landscape. When a cell on the edge of the bounding box dies the box is
+ * only shrunk when it is next requested, by walking the row and column counts
+ * inwards from the old edges.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.Arrays;
+
+public class Statistics {
+
+    private final int[] columns;
+    private final int[] rows;
+    private int population = 0;
+
+    private int minX;
+    private int maxX;
+    private int minY;
+    private int maxY;
+    private boolean shrink = false;
+
+    private int births = 0;
+    private int deaths = 0;
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of Statistics.
+     */
+
+    /**
+     * Constructor.
+     * @param width of the landscape.
+     * @param height of the landscape.
+     */
+    public Statistics(int width, int height) {
+        columns = new int[width];
+        rows = new int[height];
+        clear();
+    }
+
+    /**
+     * Reset to an empty landscape.
+     */
+    public void clear() {
+        Arrays.fill(columns, 0);
+        Arrays.fill(rows, 0);
+        population = 0;
+        births = 0;
+        deaths = 0;
+        minX = columns.length;
+        maxX = -1;
+        minY = rows.length;
+        maxY = -1;
+        shrink = false;
+    }
+
+
+
+    /************************************************************************
+     * Support code for updating.
+     */
+
+    /**
+     * Account for a single cell changing state.
+     * @param x coordinate of the cell.
+     * @param y coordinate of the cell.
+     * @param living is the new state of the cell.
+     */
+    public void toggled(int x, int y, boolean living) {
+        if (living) {
+            ++population;
+            ++columns[x];
+            ++rows[y];
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        } else {
+            --population;
+            if (--columns[x] == 0 && (x == minX || x == maxX))
+                shrink = true;
+            if (--rows[y] == 0 && (y == minY || y == maxY))
+                shrink = true;
+        }
+    }
+
+    /**
+     * Record the births and deaths of the latest generation.
+     */
+    public void setGeneration(int born, int died) {
+        births = born;
+        deaths = died;
+    }
+
+    /**
+     * Walk the edges of the bounding box inwards to the nearest populated
+     * row and column.
+     */
+    private void shrinkBox() {
+        shrink = false;
+        if (population == 0) {
+            minX = columns.length;
+            maxX = -1;
+            minY = rows.length;
+            maxY = -1;
+
+            return;
+        }
+
+        while (columns[minX] == 0) ++minX;
+        while (columns[maxX] == 0) --maxX;
+        while (rows[minY] == 0) ++minY;
+        while (rows[maxY] == 0) --maxY;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public int getPopulation() { return population; }
+    public int getBirths() { return births; }
+    public int getDeaths() { return deaths; }
+
+    public int getColumnPopulation(int x) { return columns[x]; }
+    public int getRowPopulation(int y) { return rows[y]; }
+
+    public boolean isEmpty() { return population == 0; }
+
+    public int getMinX() { if (shrink) shrinkBox(); return minX; }
+    public int getMaxX() { if (shrink) shrinkBox(); return maxX; }
+    public int getMinY() { if (shrink) shrinkBox(); return minY; }
+    public int getMaxY() { if (shrink) shrinkBox(); return maxY; }
+
+}
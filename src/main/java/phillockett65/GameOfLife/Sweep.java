@@ -0,0 +1,320 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Sweep is the class that classifies rules by running the same set of
+ * random soups under each of them. A rule is the combination of the birth
+ * and survival check boxes for 1 to 8 neighbours, so there are 2^16 of them,
+ * identified by an index as described in Torus.
+ *
+ * Each run uses a Torus reused by the thread. A run stops early when the
+ * soup dies out or a previous state recurs, otherwise it is stopped at the
+ * generation limit. The rules are shared between a pool of threads and a
+ * summary line is written per rule.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import phillockett65.Debug.Debug;
+
+public class Sweep {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    public static final int RULES = 1 << 16;
+
+    public static final int DIES = 0;
+    public static final int STABLE = 1;
+    public static final int OSCILLATES = 2;
+    public static final int EXPLODES = 3;
+    public static final int CHAOTIC = 4;
+    private static final String[] CLASSES = { "dies", "stable", "oscillates", "explodes", "chaotic" };
+
+    private final long[][] soups;
+    private final int limit;
+
+    private final int[] rules;
+    private final int[][] counts;
+    private final int[] periods;
+    private final long[] generations;
+    private final AtomicInteger nextRule = new AtomicInteger();
+
+
+
+    /************************************************************************
+     * Support code for rules.
+     */
+
+    /**
+     * Parse a list of rules, each one either B/S notation, an index or a
+     * range of indices such as 0-255, or "all".
+     */
+    private static int[] parseRules(String spec) {
+        if (spec.equals("all")) {
+            int[] all = new int[RULES];
+            for (int i = 0; i < RULES; ++i)
+                all[i] = i;
+
+            return all;
+        }
+
+        ArrayList<Integer> list = new ArrayList<Integer>();
+        for (String item : spec.split(",")) {
+            final int dash = item.indexOf('-');
+            if (Character.isDigit(item.charAt(0)) && dash > 0) {
+                final int from = Integer.parseInt(item.substring(0, dash));
+                final int to = Integer.parseInt(item.substring(dash + 1));
+                for (int i = from; i <= to; ++i)
+                    list.add(i);
+            } else if (Character.isDigit(item.charAt(0))) {
+                list.add(Integer.parseInt(item));
+            } else {
+                list.add(Torus.parseRule(item));
+            }
+        }
+
+        int[] rules = new int[list.size()];
+        for (int i = 0; i < rules.length; ++i) {
+            rules[i] = list.get(i);
+            if (rules[i] < 0 || rules[i] >= RULES)
+                throw new IllegalArgumentException("Invalid rule " + rules[i]);
+        }
+
+        return rules;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the simulation of a single run.
+     */
+
+    /**
+     * Run a soup until it dies, a state recurs or the limit is reached.
+     * @param torus to run the soup on, with the rule already set.
+     * @return the classification of the run.
+     */
+    private static int classify(Torus torus, long[] soup) {
+        torus.load(soup);
+        torus.begin();
+
+        final int initial = torus.getPopulation();
+        while (true) {
+            if (torus.getPopulation() == 0)
+                return DIES;
+
+            final int earlier = torus.recurrence();
+            if (earlier >= 0)
+                return (torus.getPeriod() == 1) ? STABLE : OSCILLATES;
+
+            if (torus.isLimit())
+                return (torus.getPopulation() > initial) ? EXPLODES : CHAOTIC;
+
+            torus.step();
+        }
+    }
+
+    /**
+     * Take rules from the shared list and run every soup under each of them
+     * until none are left.
+     */
+    private void work() {
+        Torus torus = new Torus(limit);
+        for (int i = nextRule.getAndIncrement(); i < rules.length; i = nextRule.getAndIncrement()) {
+            torus.setRule(rules[i]);
+            for (long[] soup : soups) {
+                final int classification = classify(torus, soup);
+                ++counts[i][classification];
+                periods[i] = Math.max(periods[i], torus.getPeriod());
+                generations[i] += torus.getGeneration();
+            }
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Sweep.
+     */
+
+    /**
+     * Constructor.
+     * @param rules to classify.
+     * @param soupCount number of random soups to run under each rule.
+     * @param density of the soups.
+     * @param seed for the soups.
+     * @param limit maximum number of generations per run.
+     */
+    public Sweep(int[] rules, int soupCount, double density, long seed, int limit) {
+        this.rules = rules;
+        this.limit = limit;
+        counts = new int[rules.length][CLASSES.length];
+        periods = new int[rules.length];
+        generations = new long[rules.length];
+
+        SplittableRandom random = new SplittableRandom(seed);
+        soups = new long[soupCount][Torus.SIZE];
+        for (long[] soup : soups)
+            for (int y = 0; y < Torus.SIZE; ++y)
+                for (int x = 0; x < Torus.SIZE; ++x)
+                    if (random.nextDouble() < density)
+                        soup[y] |= 1L << x;
+    }
+
+    /**
+     * Classify all the rules using a pool of threads.
+     * @param threads number of threads to use.
+     */
+    public void run(int threads) throws InterruptedException {
+        nextRule.set(0);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; ++i)
+            pool.execute(this::work);
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * @return the total number of generations evaluated.
+     */
+    public long getGenerations() {
+        long total = 0;
+        for (long count : generations)
+            total += count;
+
+        return total;
+    }
+
+    /**
+     * Write one line per rule: the counts of each classification, the
+     * longest period found, the mean generations per run and the most
+     * common classification.
+     */
+    public void write(PrintStream out) {
+        out.print("index,rule");
+        for (String name : CLASSES)
+            out.print("," + name);
+        out.println(",period,generations,class");
+
+        for (int i = 0; i < rules.length; ++i) {
+            out.print(rules[i] + "," + Torus.getRuleString(rules[i]));
+            int common = 0;
+            for (int c = 0; c < CLASSES.length; ++c) {
+                out.print("," + counts[i][c]);
+                if (counts[i][c] > counts[i][common])
+                    common = c;
+            }
+            out.printf(",%d,%.1f,%s%n", periods[i], (double)generations[i] / soups.length, CLASSES[common]);
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for the command line.
+     */
+
+    private static void usage() {
+        System.err.println("Usage: sweep [options]");
+        System.err.println("  --rules LIST      comma separated rules, as B3/S23, index or");
+        System.err.println("                    range of indices such as 0-255 (default all)");
+        System.err.println("  --soups N         number of soups per rule (default 8)");
+        System.err.println("  --soup DENSITY    density of the soups (default 0.35)");
+        System.err.println("  --seed N          random seed for the soups (default 1)");
+        System.err.println("  --limit N         maximum generations per run (default 1000)");
+        System.err.println("  --threads N       number of threads (default all cores)");
+        System.err.println("  --out FILE        write the summary to FILE instead of stdout");
+    }
+
+    /**
+     * Headless entry point.
+     * @param args command line options, see usage().
+     * @return 0 on success, non-zero otherwise.
+     */
+    public static int main(String[] args) {
+        String spec = "all";
+        int soupCount = 8;
+        double density = 0.35;
+        long seed = 1;
+        int limit = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File output = null;
+        int[] rules;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--rules":     spec = args[++i]; break;
+                    case "--soups":     soupCount = Integer.parseInt(args[++i]); break;
+                    case "--soup":      density = Double.parseDouble(args[++i]); break;
+                    case "--seed":      seed = Long.parseLong(args[++i]); break;
+                    case "--limit":     limit = Integer.parseInt(args[++i]); break;
+                    case "--threads":   threads = Integer.parseInt(args[++i]); break;
+                    case "--out":       output = new File(args[++i]); break;
+                    default:            throw new IllegalArgumentException(args[i]);
+                }
+            }
+            rules = parseRules(spec);
+        } catch (RuntimeException e) {
+            usage();
+            return 1;
+        }
+
+        if (soupCount <= 0 || limit <= 0 || threads <= 0) {
+            usage();
+            return 1;
+        }
+
+        Sweep sweep = new Sweep(rules, soupCount, density, seed, limit);
+        try (PrintStream out = (output == null) ? null : new PrintStream(output)) {
+            final long start = System.nanoTime();
+            sweep.run(threads);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+
+            sweep.write((out == null) ? System.out : out);
+
+            final double cells = (double)sweep.getGenerations() * Torus.SIZE * Torus.SIZE;
+            System.err.printf("Swept %d rules in %.2fs, %.1fM cell updates/s per thread%n",
+                rules.length, seconds, cells / seconds / threads / 1e6);
+        } catch (FileNotFoundException | InterruptedException e) {
+            Debug.critical(DD, e.getMessage());
+            return 1;
+        }
+
+        return 0;
+    }
+
+}
@@ -0,0 +1,313 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Tiles is the class that simulates the landscape as a grid of 8 x 8 tiles.
+ * Each tile is immutable and interned in a weak canonicalising table, so all
+ * tiles with the same cells are the same object and a change to a cell
+ * replaces its tile rather than modifying it. Ash, such as blocks and
+ * blinkers, and the streams from guns produce the same tiles over and over,
+ * which then share memory.
+ *
+ * The next state of the cells of a tile depends only on the tile and its
+ * eight neighbours, so the successors of recent neighbourhoods of tiles are
+ * memoised. Since tiles are interned, a neighbourhood is recognised by
+ * comparing references, and a successor that is the same object as the tile
+ * means nothing in it changed.
+ *
+ * The rule is the 512 entry table of Isotropic. A Tiles is only valid for the
+ * rule and topology it was created with.
+ */
+package phillockett65.GameOfLife;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.WeakHashMap;
+
+public class Tiles {
+
+    public static final int SIZE = 8;
+
+    // Number of successors memoised, a power of 2.
+    private static final int MEMO = 1 << 16;
+
+    /**
+     * An immutable 8 x 8 block of cells, row y held in byte y and column x
+     * in bit x of that byte.
+     */
+    private static final class Tile {
+        final long cells;
+        final int hash;
+
+        Tile(long cells) {
+            this.cells = cells;
+            this.hash = Long.hashCode(cells * 0x9E3779B97F4A7C15L);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof Tile) && ((Tile)other).cells == cells;
+        }
+    }
+
+    private final WeakHashMap<Tile, WeakReference<Tile>> canonical = new WeakHashMap<Tile, WeakReference<Tile>>();
+    private final Tile empty = intern(0L);
+
+    private final byte[] table;
+    private final Model.Topology topology;
+    private final int columns;
+    private final int rows;
+
+    private Tile[] grid;
+    private Tile[] next;
+    private final Tile[] neighbours = new Tile[8];
+    private final int[] lines = new int[SIZE + 2];
+
+    // The memo is direct mapped, each entry is a tile and its neighbours in
+    // row order followed by the successor of the tile in that neighbourhood.
+    private final Tile[] memo = new Tile[MEMO * 10];
+
+    private long hits = 0;
+    private long misses = 0;
+
+
+
+    /************************************************************************
+     * Support code for tiles.
+     */
+
+    /**
+     * Get the canonical tile with the given cells.
+     */
+    private Tile intern(long cells) {
+        final Tile key = new Tile(cells);
+        final WeakReference<Tile> reference = canonical.get(key);
+        if (reference != null) {
+            final Tile tile = reference.get();
+            if (tile != null)
+                return tile;
+        }
+
+        canonical.put(key, new WeakReference<Tile>(key));
+
+        return key;
+    }
+
+    /**
+     * Mirror the cells of a tile left to right.
+     */
+    private static long mirror(long cells) { return Long.reverseBytes(Long.reverse(cells)); }
+
+    /**
+     * Get a tile, which may be beyond the edges of the grid by one tile, in
+     * which case the topology decides which tile is meant.
+     */
+    private Tile getTile(int tx, int ty) {
+        if (tx >= 0 && tx < columns && ty >= 0 && ty < rows)
+            return grid[tx * rows + ty];
+        if (topology == Model.Topology.BOUNDED)
+            return empty;
+
+        if (ty < 0 || ty >= rows) {
+            ty = Math.floorMod(ty, rows);
+            if (topology == Model.Topology.KLEIN) {
+                // Crossing the top or bottom edge of a Klein bottle mirrors x.
+                final Tile tile = grid[Math.floorMod(columns - 1 - tx, columns) * rows + ty];
+                return (tile == empty) ? empty : intern(mirror(tile.cells));
+            }
+        }
+
+        return grid[Math.floorMod(tx, columns) * rows + ty];
+    }
+
+    /**
+     * Get row y of a 10 x 10 neighbourhood, from -1 to 8, as bits 0 to 9.
+     */
+    private static int getRow(long left, long centre, long right, int y) {
+        final int shift = y * 8;
+        return (int)((left >>> (shift + 7)) & 1) |
+            (int)(((centre >>> shift) & 0xFF) << 1) |
+            (int)(((right >>> shift) & 1) << 9);
+    }
+
+    /**
+     * Apply the rule to the cells of a tile.
+     * @param n the neighbours of the tile, in row order.
+     * @param tile in the centre of the neighbourhood.
+     * @return the cells of the tile in the next generation.
+     */
+    private long evaluate(Tile[] n, Tile tile) {
+        lines[0] = getRow(n[0].cells, n[1].cells, n[2].cells, 7);
+        for (int y = 0; y < SIZE; ++y)
+            lines[y + 1] = getRow(n[3].cells, tile.cells, n[4].cells, y);
+        lines[SIZE + 1] = getRow(n[5].cells, n[6].cells, n[7].cells, 0);
+
+        long result = 0;
+        for (int y = 0; y < SIZE; ++y) {
+            final int above = lines[y];
+            final int middle = lines[y + 1];
+            final int below = lines[y + 2];
+            for (int x = 0; x < SIZE; ++x) {
+                final int index = ((above >>> x) & 7) | ((middle >>> x) & 7) << 3 | ((below >>> x) & 7) << 6;
+                result |= (long)table[index] << (y * 8 + x);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the successor of a tile in its neighbourhood, from the memo if the
+     * same neighbourhood has been seen before.
+     */
+    private Tile successor(Tile[] n, Tile tile) {
+        int mix = tile.hash;
+        for (Tile neighbour : n)
+            mix = mix * 31 + neighbour.hash;
+        final int slot = ((mix ^ (mix >>> 16)) & (MEMO - 1)) * 10;
+
+        if (memo[slot] == tile) {
+            boolean same = true;
+            for (int i = 0; i < 8 && same; ++i)
+                same = memo[slot + 1 + i] == n[i];
+            if (same) {
+                ++hits;
+                return memo[slot + 9];
+            }
+        }
+
+        ++misses;
+        final Tile result = intern(evaluate(n, tile));
+        memo[slot] = tile;
+        System.arraycopy(n, 0, memo, slot + 1, 8);
+        memo[slot + 9] = result;
+
+        return result;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of Tiles.
+     */
+
+    /**
+     * Constructor.
+     * @param table the next state of a cell for each 3 x 3 neighbourhood.
+     * @param topology of the landscape.
+     * @param width of the landscape in cells, a multiple of SIZE.
+     * @param height of the landscape in cells, a multiple of SIZE.
+     */
+    public Tiles(byte[] table, Model.Topology topology, int width, int height) {
+        this.table = table;
+        this.topology = topology;
+        columns = width / SIZE;
+        rows = height / SIZE;
+        grid = new Tile[columns * rows];
+        next = new Tile[columns * rows];
+        Arrays.fill(grid, empty);
+    }
+
+    /**
+     * Check if a landscape can be held as tiles.
+     */
+    public static boolean isSupported(int width, int height) {
+        return (width % SIZE) == 0 && (height % SIZE) == 0;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * @return the number of distinct tiles currently interned.
+     */
+    public int getDistinct() { return canonical.size(); }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+
+    /**
+     * Replace the tiles with the cells of a landscape, keeping the memoised
+     * successors of any tiles seen before.
+     * @param model whose landscape is copied into the tiles.
+     */
+    public void load(Model model) {
+        for (int tx = 0; tx < columns; ++tx) {
+            for (int ty = 0; ty < rows; ++ty) {
+                long cells = 0;
+                for (int y = 0; y < SIZE; ++y)
+                    for (int x = 0; x < SIZE; ++x)
+                        if (model.isLiving(tx * SIZE + x, ty * SIZE + y))
+                            cells |= 1L << (y * 8 + x);
+                grid[tx * rows + ty] = intern(cells);
+            }
+        }
+    }
+
+    /**
+     * Evaluate one generation of a rectangular region of cells and add all
+     * cells that change state to the toggles list. The region is widened to
+     * whole tiles.
+     * @param left most column of the region.
+     * @param right most column of the region.
+     * @param top most row of the region.
+     * @param bottom most row of the region.
+     * @param toggles list of cells that should change state.
+     */
+    public void step(int left, int right, int top, int bottom, LinkedList<Integer> toggles) {
+        System.arraycopy(grid, 0, next, 0, grid.length);
+
+        for (int tx = left / SIZE; tx <= right / SIZE; ++tx) {
+            for (int ty = top / SIZE; ty <= bottom / SIZE; ++ty) {
+                final Tile tile = grid[tx * rows + ty];
+                neighbours[0] = getTile(tx - 1, ty - 1);
+                neighbours[1] = getTile(tx, ty - 1);
+                neighbours[2] = getTile(tx + 1, ty - 1);
+                neighbours[3] = getTile(tx - 1, ty);
+                neighbours[4] = getTile(tx + 1, ty);
+                neighbours[5] = getTile(tx - 1, ty + 1);
+                neighbours[6] = getTile(tx, ty + 1);
+                neighbours[7] = getTile(tx + 1, ty + 1);
+
+                final Tile result = successor(neighbours, tile);
+                if (result == tile)
+                    continue;
+
+                next[tx * rows + ty] = result;
+                for (long changed = tile.cells ^ result.cells; changed != 0; changed &= changed - 1) {
+                    final int bit = Long.numberOfTrailingZeros(changed);
+                    toggles.add(Model.encode(tx * SIZE + (bit & 7), ty * SIZE + (bit >>> 3)));
+                }
+            }
+        }
+
+        final Tile[] swap = grid;
+        grid = next;
+        next = swap;
+    }
+
+}
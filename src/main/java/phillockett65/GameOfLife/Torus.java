@@ -0,0 +1,286 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Torus is the class that simulates a small 64 x 64 torus held as one long
+ * per row, for the batch tools that run many independent patterns. A whole
+ * row is evaluated at once: the eight neighbour bit boards are summed into
+ * four bit planes and the rule is applied by comparing the planes with each
+ * count. Every state since begin() is kept, with an open addressed table of
+ * their hashes, so that a recurring state can be detected cheaply.
+ *
+ * A rule is the combination of the birth and survival check boxes for 1 to
+ * 8 neighbours, identified by an index with the birth counts in the low byte
+ * and the survival counts in the high byte.
+ *
+ * A Torus is not thread safe, each thread should allocate its own and reuse
+ * it for every run.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.Arrays;
+
+public class Torus {
+
+    public static final int SIZE = 64;
+
+    private long[] board = new long[SIZE];
+    private long[] next = new long[SIZE];
+    private final long[] neighbours = new long[8];
+
+    // Masks of the neighbour counts that cause birth and survival.
+    private final long[] birth = new long[9];
+    private final long[] survive = new long[9];
+
+    // Every state since begin(), for confirming a recurrence.
+    private final int limit;
+    private final long[] states;
+    private int generation;
+    private int period;
+
+    // Open addressed table of state hashes to generations.
+    private final long[] keys;
+    private final int[] values;
+    private final int[] stamps;
+    private final int mask;
+    private int stamp = 0;
+
+
+
+    /************************************************************************
+     * Support code for rules.
+     */
+
+    /**
+     * Convert a rule index to B/S notation, for example B3/S23.
+     */
+    public static String getRuleString(int rule) {
+        StringBuilder builder = new StringBuilder("B");
+        for (int n = 1; n <= 8; ++n)
+            if ((rule & (1 << (n-1))) != 0)
+                builder.append(n);
+        builder.append("/S");
+        for (int n = 1; n <= 8; ++n)
+            if ((rule & (1 << (n+7))) != 0)
+                builder.append(n);
+
+        return builder.toString();
+    }
+
+    /**
+     * Convert B/S notation to a rule index.
+     * @param text such as B3/S23, case insensitive.
+     * @return the rule index.
+     */
+    public static int parseRule(String text) {
+        int rule = 0;
+        int shift = -1;
+        for (char c : text.toUpperCase().toCharArray()) {
+            if (c == 'B') {
+                shift = 0;
+            } else if (c == 'S') {
+                shift = 8;
+            } else if (c >= '1' && c <= '8' && shift >= 0) {
+                rule |= 1 << (c - '1' + shift);
+            } else if (c != '/') {
+                throw new IllegalArgumentException("Invalid rule " + text);
+            }
+        }
+
+        return rule;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Torus.
+     */
+
+    /**
+     * Constructor.
+     * @param limit the maximum number of generations that will be checked
+     *              for recurrence between calls to begin().
+     */
+    public Torus(int limit) {
+        this.limit = limit;
+        states = new long[(limit + 1) * SIZE];
+        final int capacity = Integer.highestOneBit(Math.max(16, limit * 2)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        stamps = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Set the rule used by step().
+     * @param rule index, see getRuleString().
+     */
+    public void setRule(int rule) {
+        for (int count = 1; count <= 8; ++count) {
+            birth[count] = ((rule & (1 << (count-1))) != 0) ? -1L : 0;
+            survive[count] = ((rule & (1 << (count+7))) != 0) ? -1L : 0;
+        }
+    }
+
+    /**
+     * Forget all previous states and start counting generations from 0.
+     */
+    public void begin() {
+        ++stamp;
+        generation = 0;
+        period = 0;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the cells.
+     */
+
+    public void clear() { Arrays.fill(board, 0); }
+
+    public boolean get(int x, int y) { return ((board[y & (SIZE-1)] >>> (x & (SIZE-1))) & 1) != 0; }
+    public void set(int x, int y) { board[y & (SIZE-1)] |= 1L << (x & (SIZE-1)); }
+
+    /**
+     * Replace the board with the given rows.
+     */
+    public void load(long[] rows) { System.arraycopy(rows, 0, board, 0, SIZE); }
+
+    /**
+     * Get a row of the board, bit x is column x.
+     */
+    public long getRow(int y) { return board[y]; }
+
+    public int getPopulation() {
+        int count = 0;
+        for (long row : board)
+            count += Long.bitCount(row);
+
+        return count;
+    }
+
+    public int getGeneration() { return generation; }
+
+    /**
+     * @return the period found by recurrence(), or 0 if none was found.
+     */
+    public int getPeriod() { return period; }
+
+
+
+    /************************************************************************
+     * Support code for the simulation.
+     */
+
+    private long hash() {
+        long h = 0;
+        for (long row : board)
+            h = (h ^ row) * 0x9E3779B97F4A7C15L;
+
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Look for an earlier generation with the same state as the current
+     * one, and record the current one if there is none. Must be called once
+     * per generation, at most limit times after begin().
+     * @return the earlier generation or -1.
+     */
+    public int recurrence() {
+        final long h = hash();
+        System.arraycopy(board, 0, states, generation * SIZE, SIZE);
+
+        for (int slot = (int)h & mask; ; slot = (slot + 1) & mask) {
+            if (stamps[slot] != stamp) {
+                stamps[slot] = stamp;
+                keys[slot] = h;
+                values[slot] = generation;
+
+                return -1;
+            }
+            if (keys[slot] == h) {
+                final int earlier = values[slot];
+                if (Arrays.equals(states, earlier * SIZE, (earlier + 1) * SIZE, board, 0, SIZE)) {
+                    period = generation - earlier;
+                    return earlier;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the recurrence limit has been reached.
+     */
+    public boolean isLimit() { return generation >= limit; }
+
+    /**
+     * Evaluate one generation of the whole torus.
+     */
+    public void step() {
+        for (int y = 0; y < SIZE; ++y) {
+            final long up = board[(y + SIZE - 1) & (SIZE - 1)];
+            final long mid = board[y];
+            final long down = board[(y + 1) & (SIZE - 1)];
+
+            neighbours[0] = Long.rotateLeft(up, 1);
+            neighbours[1] = up;
+            neighbours[2] = Long.rotateRight(up, 1);
+            neighbours[3] = Long.rotateLeft(mid, 1);
+            neighbours[4] = Long.rotateRight(mid, 1);
+            neighbours[5] = Long.rotateLeft(down, 1);
+            neighbours[6] = down;
+            neighbours[7] = Long.rotateRight(down, 1);
+
+            // Sum the eight neighbour bit boards into four bit planes.
+            long c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+            for (long n : neighbours) {
+                final long k0 = c0 & n;
+                c0 ^= n;
+                final long k1 = c1 & k0;
+                c1 ^= k0;
+                final long k2 = c2 & k1;
+                c2 ^= k1;
+                c3 |= k2;
+            }
+
+            long result = 0;
+            for (int count = 1; count <= 8; ++count) {
+                final long cells = birth[count] & ~mid | survive[count] & mid;
+                if (cells == 0)
+                    continue;
+
+                final long equal =
+                    (((count & 1) != 0) ? c0 : ~c0) &
+                    (((count & 2) != 0) ? c1 : ~c1) &
+                    (((count & 4) != 0) ? c2 : ~c2) &
+                    (((count & 8) != 0) ? c3 : ~c3);
+                result |= equal & cells;
+            }
+            next[y] = result;
+        }
+
+        long[] swap = board;
+        board = next;
+        next = swap;
+        ++generation;
+    }
+
+}
@@ -0,0 +1,226 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Viewer is the class that subscribes to a Server over WebSocket and queues
+ * the messages it receives. next() hands the Model the cells to toggle for
+ * the queued messages, without blocking. A delta is passed on as it is, a
+ * snapshot is compared with the current landscape so that only the cells
+ * that differ are toggled.
+ *
+ * The next message is only requested once next() has taken the last one,
+ * so at most one message is held. While the display is stalled the server
+ * cannot send, and it merges the generations into a single delta instead.
+ */
+package phillockett65.GameOfLife;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import phillockett65.Debug.Debug;
+
+public class Viewer implements WebSocket.Listener {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    private static final int TIMEOUT = 10;
+
+    private final Model model;
+    private final WebSocket socket;
+    private final ConcurrentLinkedQueue<ByteBuffer> messages = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+    private volatile boolean failed = false;
+    private long generation;
+
+
+
+    /************************************************************************
+     * Support code for message decoding.
+     */
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+
+    /**
+     * Toggle the cells that differ from a snapshot.
+     */
+    private void applySnapshot(ByteBuffer buffer, LinkedList<Integer> toggles) throws IOException {
+        final int width = buffer.getInt();
+        final int height = buffer.getInt();
+        if (width != model.getWidth() || height != model.getHeight())
+            throw new IOException("Server landscape is " + width + " x " + height);
+
+        byte[][] living = new byte[width][height];
+        final int count = getVarint(buffer);
+        int pos = 0;
+        for (int i = 0; i < count; ++i) {
+            pos += getVarint(buffer);
+            living[Model.extractX(pos)][Model.extractY(pos)] = 1;
+        }
+
+        for (int x = 0; x < width; ++x)
+            for (int y = 0; y < height; ++y)
+                if ((living[x][y] == 1) != model.isLiving(x, y))
+                    toggles.add(Model.encode(x, y));
+    }
+
+    private static void applyDelta(ByteBuffer buffer, LinkedList<Integer> toggles) {
+        final int count = getVarint(buffer);
+        int pos = 0;
+        for (int i = 0; i < count; ++i) {
+            pos += getVarint(buffer);
+            toggles.add(pos);
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for WebSocket.Listener.
+     */
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        partial.write(bytes, 0, bytes.length);
+        if (last) {
+            messages.add(ByteBuffer.wrap(partial.toByteArray()));
+            partial.reset();
+        } else {
+            webSocket.request(1);
+        }
+
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        Debug.trace(DD, "Viewer closed %d %s", statusCode, reason);
+        failed = true;
+
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        Debug.critical(DD, "Viewer " + error.getMessage());
+        failed = true;
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Viewer.
+     */
+
+    /**
+     * Connect to a Server.
+     * @param model whose landscape is to follow the server.
+     * @param uri of the server, for example ws://localhost:8080/.
+     */
+    public Viewer(Model model, URI uri) throws IOException {
+        this.model = model;
+        this.generation = model.getGeneration();
+        try {
+            socket = HttpClient.newHttpClient().newWebSocketBuilder()
+                .buildAsync(uri, this)
+                .get(TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            throw new IOException("Unable to connect to " + uri, e);
+        }
+
+        Debug.trace(DD, "Viewer connected to %s", uri);
+    }
+
+    /**
+     * Disconnect from the server.
+     */
+    public void close() {
+        failed = true;
+        socket.sendClose(WebSocket.NORMAL_CLOSURE, "").exceptionally(e -> null);
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    public boolean isFailed() { return failed; }
+    public long getGeneration() { return generation; }
+
+    /**
+     * Get the cells that need toggling to bring the landscape up to date
+     * with the messages received from the server, then request the next
+     * message. A snapshot is handled on its own, any queued deltas are
+     * merged so that the display catches up with the server in one step.
+     * @return the list of toggled cells or null if there are no messages.
+     */
+    public LinkedList<Integer> next() throws IOException {
+        ByteBuffer buffer = messages.peek();
+        if (buffer == null) {
+            if (failed)
+                throw new IOException("Viewer disconnected");
+
+            return null;
+        }
+
+        LinkedList<Integer> toggles = new LinkedList<>();
+        if (buffer.get(0) == Server.SNAPSHOT) {
+            messages.poll();
+            buffer.get();
+            generation = buffer.getLong();
+            applySnapshot(buffer, toggles);
+        } else {
+            while (buffer != null && buffer.get(0) == Server.DELTA) {
+                messages.poll();
+                buffer.get();
+                generation = buffer.getLong();
+                applyDelta(buffer, toggles);
+                buffer = messages.peek();
+            }
+        }
+
+        if (messages.isEmpty())
+            socket.request(1);
+
+        return toggles;
+    }
+
+}
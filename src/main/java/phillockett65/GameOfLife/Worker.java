@@ -0,0 +1,303 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Worker is the class that simulates one vertical strip of the landscape in
+ * a separate JVM on behalf of a Coordinator. The strip is held with a one
+ * cell halo column on each side. Every generation the edge columns of the
+ * strip are sent to the neighbouring workers, the interior of the strip is
+ * evaluated while the neighbours' columns are in transit, then the halo
+ * columns are received and the two edge columns are evaluated. The toggled
+ * cells are streamed back to the coordinator.
+ *
+ * The workers form a ring, each one connects to the worker on its right and
+ * accepts a connection from the worker on its left. Rows wrap within the
+ * strip so only columns need to be exchanged.
+ *
+ * Protocol, all values are big-endian ints unless stated otherwise:
+ *  worker -> coordinator on connection: listening port.
+ *  coordinator -> worker INIT: index, count, left x, strip width, height,
+ *      live mask, birth mask, right neighbour port, cell count, cells.
+ *  coordinator -> worker STEP: number of generations it may run ahead.
+ *  coordinator -> worker STOP.
+ *  worker -> coordinator per generation: cell count, cells.
+ *  worker -> worker per generation: edge column packed 8 cells per byte.
+ * Cells are packed global positions as produced by Model.encode().
+ */
+package phillockett65.GameOfLife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+
+import phillockett65.Debug.Debug;
+
+public class Worker {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    public static final int INIT = 1;
+    public static final int STEP = 2;
+    public static final int STOP = 3;
+
+    private int left;
+    private int width;
+    private int height;
+    private int liveMask;
+    private int birthMask;
+
+    // Strip columns 1 to width, halo columns 0 and width+1.
+    private byte[][] strip;
+    private int[] toggles;
+    private int count;
+
+    private DataInputStream control;
+    private DataOutputStream results;
+    private DataInputStream fromLeft;
+    private DataOutputStream toLeft;
+    private DataInputStream fromRight;
+    private DataOutputStream toRight;
+
+    private final Semaphore credit = new Semaphore(0);
+    private volatile boolean running = true;
+
+
+
+    /************************************************************************
+     * Support code for the halo exchange.
+     */
+
+    private static DataInputStream input(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    private static DataOutputStream output(Socket socket) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    private void sendColumn(DataOutputStream out, int column) throws IOException {
+        final byte[] cells = strip[column];
+        byte packed = 0;
+        for (int y = 0; y < height; ++y) {
+            packed |= cells[y] << (y & 7);
+            if ((y & 7) == 7 || y == height-1) {
+                out.writeByte(packed);
+                packed = 0;
+            }
+        }
+        out.flush();
+    }
+
+    private void receiveColumn(DataInputStream in, int column) throws IOException {
+        final byte[] cells = strip[column];
+        int packed = 0;
+        for (int y = 0; y < height; ++y) {
+            if ((y & 7) == 0)
+                packed = in.readUnsignedByte();
+            cells[y] = (byte)((packed >> (y & 7)) & 1);
+        }
+    }
+
+
+
+    /************************************************************************
+     * Support code for the simulation of the strip.
+     */
+
+    /**
+     * Apply the rules to a column of the strip, rows wrap around.
+     */
+    private void nextGenColumn(int x) {
+        final byte[] l = strip[x-1];
+        final byte[] c = strip[x];
+        final byte[] r = strip[x+1];
+
+        for (int y = 0; y < height; ++y) {
+            final int u = (y == 0) ? (height-1) : y-1;
+            final int d = (y == height-1) ? 0 : y+1;
+            final int neighbours = l[u] + l[y] + l[d] + c[u] + c[d] + r[u] + r[y] + r[d];
+            final boolean living = c[y] == 1;
+            final int mask = living ? liveMask : birthMask;
+            final boolean next = ((mask >> neighbours) & 1) == 1;
+            if (next != living) {
+                if (count == toggles.length)
+                    toggles = Arrays.copyOf(toggles, count * 2);
+                toggles[count++] = Model.encode(x, y);
+            }
+        }
+    }
+
+    /**
+     * Evaluate one generation, overlapping the halo exchange with the
+     * evaluation of the interior columns, and report the toggled cells.
+     */
+    private void nextGeneration() throws IOException {
+        count = 0;
+
+        sendColumn(toLeft, 1);
+        sendColumn(toRight, width);
+
+        for (int x = 2; x < width; ++x)
+            nextGenColumn(x);
+
+        receiveColumn(fromLeft, 0);
+        receiveColumn(fromRight, width+1);
+
+        nextGenColumn(1);
+        if (width > 1)
+            nextGenColumn(width);
+
+        // Apply the toggles and report them using global positions.
+        results.writeInt(count);
+        for (int i = 0; i < count; ++i) {
+            final int x = Model.extractX(toggles[i]);
+            final int y = Model.extractY(toggles[i]);
+            strip[x][y] ^= 1;
+            results.writeInt(Model.encode(left + x - 1, y));
+        }
+        results.flush();
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of the Worker.
+     */
+
+    /**
+     * Read the INIT message, populate the strip and connect to the ring.
+     */
+    private void init(ServerSocket server) throws IOException {
+        if (control.readInt() != INIT)
+            throw new IOException("Expected INIT");
+
+        final int index = control.readInt();
+        final int workers = control.readInt();
+        left = control.readInt();
+        width = control.readInt();
+        height = control.readInt();
+        liveMask = control.readInt();
+        birthMask = control.readInt();
+        final int rightPort = control.readInt();
+
+        strip = new byte[width+2][height];
+        toggles = new int[1024];
+        final int cells = control.readInt();
+        for (int i = 0; i < cells; ++i) {
+            final int pos = control.readInt();
+            strip[Model.extractX(pos) - left + 1][Model.extractY(pos)] = 1;
+        }
+
+        // Connect to the right neighbour while accepting from the left.
+        Socket right = new Socket(InetAddress.getLoopbackAddress(), rightPort);
+        Socket leftSocket = server.accept();
+        fromRight = input(right);
+        toRight = output(right);
+        fromLeft = input(leftSocket);
+        toLeft = output(leftSocket);
+
+        Debug.trace(DD, "Worker %d of %d columns %d to %d", index, workers, left, left + width - 1);
+    }
+
+    /**
+     * Read STEP and STOP messages from the coordinator.
+     */
+    private void listen() {
+        try {
+            while (running) {
+                final int message = control.readInt();
+                if (message == STEP) {
+                    credit.release(control.readInt());
+                } else {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            Debug.trace(DD, "Worker coordinator closed");
+        }
+        running = false;
+        credit.release();
+    }
+
+    /**
+     * Connect to the coordinator and run generations as credit is granted.
+     * @param port the coordinator is listening on.
+     */
+    private void run(int port) throws IOException, InterruptedException {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        control = input(socket);
+        results = output(socket);
+
+        results.writeInt(server.getLocalPort());
+        results.flush();
+
+        init(server);
+
+        Thread listener = new Thread(this::listen, "Worker listener");
+        listener.setDaemon(true);
+        listener.start();
+
+        try {
+            while (true) {
+                credit.acquire();
+                if (!running)
+                    break;
+
+                nextGeneration();
+            }
+        } catch (EOFException e) {
+            Debug.trace(DD, "Worker neighbour closed");
+        } finally {
+            socket.close();
+            server.close();
+        }
+    }
+
+    /**
+     * Entry point for a worker JVM started by a Coordinator.
+     * @param args --coordinator PORT.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2 || !args[0].equals("--coordinator")) {
+            System.err.println("Usage: Worker --coordinator PORT");
+            System.exit(1);
+        }
+
+        try {
+            new Worker().run(Integer.parseInt(args[1]));
+        } catch (IOException | InterruptedException e) {
+            Debug.critical(DD, e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,197 @@
+/*  GameOfLife - a JavaFX application 'framework' that uses Maven, FXML and CSS.
+ *
+ *  Copyright 2025 Philip Lockett.
+ *
+ *  This file is part of GameOfLife.
+ *
+ *  GameOfLife is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  GameOfLife is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with GameOfLife.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Worlds is the class that steps any number of independent worlds
+ * concurrently on a shared pool with a fixed number of threads. Each world
+ * is advanced in time slices: a slice simulates generations until it has
+ * run for SLICE nanoseconds, then the world goes to the back of the queue.
+ * So every world waiting for a thread gets the same share of the pool
+ * however expensive its generations are, and a world is only ever stepped
+ * by one thread at a time.
+ */
+package phillockett65.GameOfLife;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import phillockett65.Debug.Debug;
+
+public class Worlds {
+
+    // Debug delta used to adjust the local logging level.
+    private static final int DD = 0;
+
+    // Time a world runs before giving up its thread, in nanoseconds.
+    private static final long SLICE = 10000000L;
+
+    private final ExecutorService pool;
+    private final List<Model> worlds = new ArrayList<Model>();
+
+    // The worlds currently being advanced.
+    private final Map<Model, Job> jobs = new HashMap<Model, Job>();
+
+    // Set by shutdown(), the pool is stopped once the last job finishes.
+    private boolean shuttingDown = false;
+
+    /**
+     * Advances one world to a target generation, a slice at a time.
+     */
+    private class Job implements Runnable {
+        final Model world;
+        final long target;
+        final CompletableFuture<Long> future = new CompletableFuture<Long>();
+
+        Job(Model world, long target) {
+            this.world = world;
+            this.target = target;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final long end = System.nanoTime() + SLICE;
+                while (world.getGeneration() < target && !future.isDone() && System.nanoTime() < end)
+                    world.nextGeneration();
+            } catch (RuntimeException e) {
+                Debug.critical(DD, "Worlds.Job.run() " + e.getMessage());
+                finish(this);
+                future.completeExceptionally(e);
+                return;
+            }
+
+            if (world.getGeneration() < target && !future.isDone()) {
+                // Give any other waiting worlds a turn.
+                pool.execute(this);
+            } else {
+                finish(this);
+                future.complete(world.getGeneration());
+            }
+        }
+    }
+
+    private synchronized void finish(Job job) {
+        jobs.remove(job.world);
+        if (shuttingDown && jobs.isEmpty())
+            pool.shutdown();
+    }
+
+
+
+    /************************************************************************
+     * Support code for the Initialization of Worlds.
+     */
+
+    /**
+     * Constructor.
+     * @param threads in the shared pool.
+     */
+    public Worlds(int threads) {
+        pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Worlds");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop the pool once the advances already started are done. Jobs queue
+     * themselves again after each slice, so the pool itself is only shut
+     * down when the last one finishes.
+     */
+    public synchronized void shutdown() {
+        shuttingDown = true;
+        if (jobs.isEmpty())
+            pool.shutdown();
+    }
+
+
+
+    /************************************************************************
+     * Support code for the public interface.
+     */
+
+    /**
+     * Create a new world, with the default settings, and add it.
+     * @return the new world.
+     */
+    public synchronized Model add() {
+        Model world = Model.create();
+        worlds.add(world);
+
+        return world;
+    }
+
+    /**
+     * @return the worlds, in the order they were added.
+     */
+    public synchronized List<Model> getWorlds() { return Collections.unmodifiableList(new ArrayList<Model>(worlds)); }
+
+    /**
+     * @return true if the world is being advanced.
+     */
+    public synchronized boolean isBusy(Model world) { return jobs.containsKey(world); }
+
+    /**
+     * Start advancing a world to a generation. The world must not be used
+     * elsewhere until the returned future is done. Cancelling the future
+     * stops the world at the end of the current generation.
+     * @param world to advance, which need not have been added.
+     * @param target generation to stop at.
+     * @return the generation reached, when it is reached.
+     * @throws IllegalStateException if the world is already being advanced
+     *                               or cannot be advanced, or the pool has
+     *                               been shut down.
+     */
+    public synchronized CompletableFuture<Long> advance(Model world, long target) {
+        if (shuttingDown)
+            throw new IllegalStateException("The pool has been shut down");
+        if (jobs.containsKey(world))
+            throw new IllegalStateException("The world is already being advanced");
+        if (!world.canAdvance())
+            throw new IllegalStateException("Generations are not simulated here");
+
+        Job job = new Job(world, target);
+        jobs.put(world, job);
+        pool.execute(job);
+
+        return job.future;
+    }
+
+    /**
+     * Start advancing every world by a number of generations.
+     * @param generations to advance each world by.
+     * @return a future that completes when every world has been advanced.
+     */
+    public synchronized CompletableFuture<Void> advanceAll(long generations) {
+        List<CompletableFuture<Long>> futures = new ArrayList<CompletableFuture<Long>>();
+        for (Model world : worlds)
+            futures.add(advance(world, world.getGeneration() + generations));
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+}